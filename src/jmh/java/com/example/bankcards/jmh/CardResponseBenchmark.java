@@ -0,0 +1,62 @@
+package com.example.bankcards.jmh;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.util.CardMasker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маскирование номера и построение CardResponse: по сохраненным last4 и по расшифрованному номеру.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardResponseBenchmark {
+    private static final String CARD_NUMBER = "4000123412345678";
+
+    private Card card;
+
+    @Setup
+    public void setUp() {
+        card = Card.builder()
+                .id(1L)
+                .cardNumberCiphertext(new byte[44])
+                .cardLast4(CardMasker.last4(CARD_NUMBER))
+                .ownerName("Ivan Ivanov")
+                .expiration(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balanceMinor(1_000_000L)
+                .build();
+    }
+
+    @Benchmark
+    public String mask() {
+        return CardMasker.mask(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public CardResponse fromLast4() {
+        return CardResponse.from(card, card.getBalanceMinor());
+    }
+
+    @Benchmark
+    public CardResponse fromPlainNumber() {
+        return CardResponse.from(card, CARD_NUMBER, card.getBalanceMinor());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bankcards.jmh;
+
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.BlindIndex;
+import com.example.bankcards.util.CryptoService;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-GCM шифрование номера карты, расшифровка одной карты и страницы карт, слепой индекс номера.
+ * Пул Cipher общий для всех потоков, поэтому число потоков (-t) влияет на результат.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoBenchmark {
+    private static final String SECRET = "bench-crypto-secret";
+    private static final String CARD_NUMBER = "4000123412345678";
+
+    private CryptoService cryptoService;
+    private BlindIndex blindIndex;
+    private byte[] ciphertext;
+
+    @Setup
+    public void setUp() {
+        cryptoService = new CryptoService(SECRET, 0, new EndpointObservations(ObservationRegistry.NOOP));
+        blindIndex = new BlindIndex("bench-index-secret");
+        ciphertext = cryptoService.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return cryptoService.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return cryptoService.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public byte[] blindIndex() {
+        return blindIndex.of(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public List<String> decryptPage(CardPage page) {
+        return page.cryptoService.decryptAll(page.cards);
+    }
+
+    /**
+     * Страница карт без last4 размером как в списке карт (по умолчанию 20, максимум 200).
+     */
+    @State(Scope.Benchmark)
+    public static class CardPage {
+        @Param({"20", "200"})
+        public int size;
+
+        CryptoService cryptoService;
+        List<Card> cards;
+
+        @Setup
+        public void setUp() {
+            cryptoService = new CryptoService(SECRET, 0, new EndpointObservations(ObservationRegistry.NOOP));
+            cards = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                cards.add(Card.builder()
+                        .id((long) i)
+                        .cardNumberCiphertext(cryptoService.encrypt(String.format("4000%012d", i)))
+                        .build());
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bankcards.jmh;
+
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.config.JwtClaims;
+import com.example.bankcards.config.JwtService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск токена с клеймами uid/epoch/roles, полный разбор с проверкой подписи (getClaim)
+ * и проверка через кэш проверенных токенов (verify), как на каждом запросе.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+    private static final Map<String, Object> CLAIMS = Map.of(
+            JwtClaims.USER_ID, 42L,
+            JwtClaims.EPOCH, 0,
+            JwtClaims.ROLES, List.of("ROLE_USER"));
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService("bankcards-api", "bankcards-clients", "bench-secret-key-for-jmh-benchmarks-only", 60, 10_000,
+                new EndpointObservations(ObservationRegistry.NOOP));
+        token = jwtService.generateToken("user@test.com", CLAIMS);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken("user@test.com", CLAIMS);
+    }
+
+    @Benchmark
+    public String getClaim() {
+        return jwtService.getClaim(token, Claims::getSubject);
+    }
+
+    @Benchmark
+    public JwtClaims verifyCached() {
+        return jwtService.verify(token);
+    }
+}
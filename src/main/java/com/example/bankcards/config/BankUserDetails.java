@@ -0,0 +1,29 @@
+package com.example.bankcards.config;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * UserDetails с идентификатором пользователя и эпохой токенов, нужными для выпуска JWT.
+ */
+public class BankUserDetails extends User {
+    private final Long id;
+    private final int tokenEpoch;
+
+    public BankUserDetails(Long id, String email, String passwordHash, boolean enabled, int tokenEpoch,
+                           Collection<? extends GrantedAuthority> authorities) {
+        super(email, passwordHash, enabled, true, true, true, authorities);
+        this.id = id;
+        this.tokenEpoch = tokenEpoch;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getTokenEpoch() {
+        return tokenEpoch;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bankcards.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Кэш второго уровня Hibernate в памяти процесса на Caffeine: у каждого региона (сущности, коллекции,
+ * результатов запросов) свой кэш с ограничением размера и временем жизни записи.
+ * Регион временных меток таблиц не вытесняется: без метки Hibernate счел бы закэшированный запрос актуальным.
+ * Кэш локален для экземпляра: изменения, сделанные в обход Hibernate или другим экземпляром, видны после TTL
+ * или явного сброса через {@code SecondLevelCacheInvalidator}.
+ */
+public class CaffeineRegionFactory extends RegionFactoryTemplate {
+    private final long maximumSize;
+    private final Duration ttl;
+    private final List<CaffeineStorageAccess> regions = new CopyOnWriteArrayList<>();
+
+    public CaffeineRegionFactory(long maximumSize, Duration ttl) {
+        this.maximumSize = maximumSize;
+        this.ttl = ttl;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return register(Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return register(Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build());
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return register(Caffeine.newBuilder().build());
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_WRITE;
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        regions.forEach(CaffeineStorageAccess::release);
+        regions.clear();
+    }
+
+    private CaffeineStorageAccess register(Cache<Object, Object> cache) {
+        CaffeineStorageAccess storage = new CaffeineStorageAccess(cache);
+        regions.add(storage);
+        return storage;
+    }
+
+    private record CaffeineStorageAccess(Cache<Object, Object> cache) implements DomainDataStorageAccess {
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return cache.getIfPresent(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            if (value == null) {
+                cache.invalidate(key);
+            } else {
+                cache.put(key, value);
+            }
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return cache.asMap().containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void release() {
+            cache.invalidateAll();
+            cache.cleanUp();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Ставит семафор перед пулом соединений, если задан app.datasource.max-concurrency
+ * (включено в профиле virtual). С репликой ({@link ReadReplicaConfig}) семафор получает каждый пул,
+ * а маршрутизирующие обертки над ними не ограничиваются повторно.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.max-concurrency")
+public class DataSourceConcurrencyConfig {
+
+    @Bean
+    static BeanPostProcessor dataSourceConcurrencyLimiter(@Value("${app.datasource.max-concurrency}") int maxConcurrency,
+                                                          @Value("${app.datasource.acquire-timeout:PT30S}") Duration acquireTimeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource
+                        && !(bean instanceof DelegatingDataSource) && !(bean instanceof AbstractRoutingDataSource)) {
+                    return new ConcurrencyLimitedDataSource(dataSource, maxConcurrency, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
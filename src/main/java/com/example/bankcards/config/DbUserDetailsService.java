@@ -5,43 +5,63 @@ import com.example.bankcards.repository.UserRepository;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * Загружает пользователей из базы данных для аутентификации и авторизаци.
+ * Загружает пользователей из базы данных для аутентификации и авторизаци
+ * и сохраняет пересчитанный хеш пароля после входа (rehash при росте стоимости BCrypt).
  */
 @Service
-public class DbUserDetailsService implements UserDetailsService {
+public class DbUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final EndpointObservations observations;
 
-    public DbUserDetailsService(UserRepository userRepository) {
+    public DbUserDetailsService(UserRepository userRepository, EndpointObservations observations) {
         this.userRepository = userRepository;
+        this.observations = observations;
     }
 
     /**
      * Находит пользователя по email и конвертирует роли в Spring-авторити.
+     * Загрузка считается в bank.user.lookup с source=user_details (вход и токены без клеймов).
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(username)
+        User user = observations.observe("bank.user.lookup", "source", "user_details", () -> userRepository.findByEmail(username))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
         Set<GrantedAuthority> authorities = user.getRoles().stream()
                 .map(role -> new SimpleGrantedAuthority("ROLE_" + role.getName()))
                 .collect(Collectors.toSet());
-        return new org.springframework.security.core.userdetails.User(
+        return new BankUserDetails(
+                user.getId(),
                 user.getEmail(),
                 user.getPasswordHash(),
                 user.isEnabled(),
-                true,
-                true,
-                true,
+                user.getTokenEpoch(),
                 authorities
         );
     }
+
+    /**
+     * Сохраняет новый хеш пароля. Меняется только поле сущности, поэтому роли пользователя
+     * остаются в кэше второго уровня (массовый UPDATE сбросил бы весь регион).
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.findByEmail(user.getUsername()).ifPresent(entity -> entity.setPasswordHash(newPassword));
+        if (user instanceof BankUserDetails bankUser) {
+            return new BankUserDetails(bankUser.getId(), bankUser.getUsername(), newPassword, bankUser.isEnabled(),
+                    bankUser.getTokenEpoch(), bankUser.getAuthorities());
+        }
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+    }
 }
@@ -0,0 +1,91 @@
+package com.example.bankcards.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Замеры (Micrometer Observation) с тегом endpoint — метод и шаблон пути текущего HTTP-запроса,
+ * например "GET /api/cards/{id}"; вне запроса — "none".
+ * Каждое наблюдение становится таймером в /actuator/prometheus; без реестра наблюдений
+ * (контекст без actuator) используется NOOP, и замеры ничего не стоят.
+ */
+@Component
+public class EndpointObservations {
+    public static final String ENDPOINT = "endpoint";
+    static final String NONE = "none";
+
+    private static final Pattern PATH_VARIABLE = Pattern.compile("\\{[^/]+}");
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private final ObservationRegistry registry;
+
+    @Autowired
+    public EndpointObservations(ObjectProvider<ObservationRegistry> registry) {
+        this(registry.getIfAvailable(() -> ObservationRegistry.NOOP));
+    }
+
+    public EndpointObservations(ObservationRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Запускает наблюдение; вызывающий добавляет теги и вызывает {@link Observation#stop()}.
+     */
+    public Observation start(String name) {
+        return create(name).start();
+    }
+
+    /**
+     * Создает наблюдение с тегом endpoint текущего запроса, не запуская его:
+     * для замера работы, которая начнется позже в другом потоке.
+     */
+    public Observation create(String name) {
+        if (registry.isNoop()) {
+            return Observation.NOOP;
+        }
+        return Observation.createNotStarted(name, registry)
+                .lowCardinalityKeyValue(ENDPOINT, currentEndpoint());
+    }
+
+    /**
+     * Замеряет действие с одним дополнительным тегом.
+     */
+    public <T> T observe(String name, String key, String value, Supplier<T> action) {
+        if (registry.isNoop()) {
+            return action.get();
+        }
+        return Observation.createNotStarted(name, registry)
+                .lowCardinalityKeyValue(ENDPOINT, currentEndpoint())
+                .lowCardinalityKeyValue(key, value)
+                .observe(action);
+    }
+
+    /**
+     * Шаблон пути, если запрос уже сопоставлен с контроллером, иначе путь с числовыми сегментами, замененными на {id}
+     * (в фильтрах безопасности). Переменные шаблона тоже приводятся к {id}, чтобы теги из фильтров и сервисов совпадали.
+     */
+    static String currentEndpoint() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return NONE;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = pattern != null
+                ? PATH_VARIABLE.matcher(pattern.toString()).replaceAll("{id}")
+                : NUMERIC_SEGMENT.matcher(request.getRequestURI()).replaceAll("/{id}");
+        if (!path.startsWith("/api/")) {
+            path = "other";
+        }
+        return request.getMethod() + " " + path;
+    }
+}
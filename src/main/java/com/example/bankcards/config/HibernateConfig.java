@@ -0,0 +1,34 @@
+package com.example.bankcards.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки Hibernate, которым нужны бины Spring.
+ */
+@Configuration
+public class HibernateConfig {
+
+    /**
+     * Подключает счетчик SQL-операторов как StatementInspector.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer(SqlStatementCounter counter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, counter);
+    }
+
+    /**
+     * Кэш второго уровня (роли и роли пользователя) на Caffeine; включается hibernate.cache.use_second_level_cache.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            @Value("${app.second-level-cache.max-size:10000}") long maxSize,
+            @Value("${app.second-level-cache.ttl:PT30M}") Duration ttl) {
+        return properties -> properties.put(AvailableSettings.CACHE_REGION_FACTORY, new CaffeineRegionFactory(maxSize, ttl));
+    }
+}
@@ -4,8 +4,11 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -14,35 +17,44 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenEpochRegistry tokenEpochRegistry;
+    private final boolean stateless;
 
-    public JwtAuthFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthFilter(JwtService jwtService,
+                         UserDetailsService userDetailsService,
+                         TokenEpochRegistry tokenEpochRegistry,
+                         @Value("${security.jwt.stateless:true}") boolean stateless) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.tokenEpochRegistry = tokenEpochRegistry;
+        this.stateless = stateless;
     }
 
     /**
-     * Извлекает и валидирует JWT, загружает пользователя и заполняет SecurityContext.
+     * Извлекает и валидирует JWT (один раз на токен, далее из кэша) и заполняет SecurityContext.
+     * В stateless-режиме принципал строится из клеймов, иначе пользователь загружается из базы.
      */
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            String username = null;
+            JwtClaims claims = null;
             try {
-                username = jwtService.getClaim(token, claims -> claims.getSubject());
+                claims = jwtService.verify(token);
             } catch (Exception ignored) { }
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                if (jwtService.isTokenValid(token, userDetails.getUsername())) {
-                    UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
+            if (claims != null && claims.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                UsernamePasswordAuthenticationToken auth = stateless && claims.isSelfContained() && tokenEpochRegistry.isFresh()
+                        ? fromClaims(claims)
+                        : fromDatabase(claims);
+                if (auth != null) {
                     auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(auth);
                 }
@@ -50,4 +62,33 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Аутентификация только по подписанным клеймам; отзыв проверяется по локальному снимку эпох.
+     */
+    private UsernamePasswordAuthenticationToken fromClaims(JwtClaims claims) {
+        if (!tokenEpochRegistry.isCurrent(claims.userId(), claims.epoch())) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = claims.roles().stream()
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .toList();
+        return new UsernamePasswordAuthenticationToken(
+                new JwtPrincipal(claims.userId(), claims.subject()), null, authorities);
+    }
+
+    /**
+     * Аутентификация с загрузкой пользователя из базы (старые токены или выключенный stateless-режим).
+     */
+    private UsernamePasswordAuthenticationToken fromDatabase(JwtClaims claims) {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.subject());
+        if (!claims.subject().equals(userDetails.getUsername()) || !userDetails.isEnabled()) {
+            return null;
+        }
+        if (claims.epoch() != null && userDetails instanceof BankUserDetails bankUser
+                && claims.epoch() < bankUser.getTokenEpoch()) {
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
 }
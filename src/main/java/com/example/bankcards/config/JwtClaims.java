@@ -0,0 +1,53 @@
+package com.example.bankcards.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.MalformedJwtException;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Неизменяемый набор клеймов проверенного JWT.
+ */
+public record JwtClaims(
+        String subject,
+        Long userId,
+        Integer epoch,
+        List<String> roles,
+        Instant issuedAt,
+        Instant expiresAt
+) {
+    public static final String USER_ID = "uid";
+    public static final String EPOCH = "epoch";
+    public static final String ROLES = "roles";
+
+    public JwtClaims {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+    }
+
+    /** Маппер из распарсенного тела токена. */
+    static JwtClaims from(Claims claims) {
+        if (claims.getExpiration() == null) {
+            throw new MalformedJwtException("Token has no expiration");
+        }
+        List<?> rawRoles = claims.get(ROLES, List.class);
+        List<String> roles = rawRoles == null ? List.of() : rawRoles.stream().map(String::valueOf).toList();
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.get(USER_ID, Long.class),
+                claims.get(EPOCH, Integer.class),
+                roles,
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration().toInstant()
+        );
+    }
+
+    /** Токен несет все, что нужно для аутентификации без загрузки пользователя. */
+    public boolean isSelfContained() {
+        return subject != null && userId != null && epoch != null;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.config;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * Принципал, восстановленный из подписанных клеймов JWT без обращения к базе.
+ */
+public record JwtPrincipal(Long userId, String email) implements AuthenticatedPrincipal {
+    @Override
+    public String getName() {
+        return email;
+    }
+}
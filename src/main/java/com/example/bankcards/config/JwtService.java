@@ -1,15 +1,26 @@
 package com.example.bankcards.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.observation.Observation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
 import java.util.function.Function;
@@ -20,17 +31,31 @@ public class JwtService {
     private final String audience;
     private final Key signingKey;
     private final long expirationMinutes;
+    private final JwtParser parser;
+    /** Проверенные токены по SHA-256 дайджесту; запись живет до истечения токена. */
+    private final Cache<String, JwtClaims> verifiedTokens;
+    private final EndpointObservations observations;
 
     public JwtService(
             @Value("${security.jwt.issuer}") String issuer,
             @Value("${security.jwt.audience}") String audience,
             @Value("${security.jwt.secret}") String secret,
-            @Value("${security.jwt.expiration-minutes}") long expirationMinutes
+            @Value("${security.jwt.expiration-minutes}") long expirationMinutes,
+            @Value("${security.jwt.verified-cache-size:10000}") long verifiedCacheSize,
+            EndpointObservations observations
     ) {
         this.issuer = issuer;
         this.audience = audience;
         this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(ensureBase64(secret)));
         this.expirationMinutes = expirationMinutes;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new UntilTokenExpires())
+                .build();
+        this.observations = observations;
     }
 
     /**
@@ -61,20 +86,78 @@ public class JwtService {
      * @return true если токен корректен, false в противном случае
      */
     public boolean isTokenValid(String token, String expectedSubject) {
-        String subject = getClaim(token, Claims::getSubject);
-        Date exp = getClaim(token, Claims::getExpiration);
-        return expectedSubject.equals(subject) && exp.after(new Date());
+        try {
+            return expectedSubject.equals(verify(token).subject());
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его клеймы.
+     * Повторная проверка того же токена берется из кэша без проверки подписи.
+     * Время пишется в таймер bank.jwt.verify с тегом cache (hit/miss) — из него же доля попаданий.
+     *
+     * @throws JwtException если подпись неверна или срок действия истек
+     */
+    public JwtClaims verify(String token) {
+        Observation observation = observations.start("bank.jwt.verify");
+        try {
+            String digest = digest(token);
+            JwtClaims cached = verifiedTokens.getIfPresent(digest);
+            if (cached != null && !cached.isExpired(Instant.now())) {
+                observation.lowCardinalityKeyValue("cache", "hit");
+                return cached;
+            }
+            observation.lowCardinalityKeyValue("cache", "miss");
+            JwtClaims claims = JwtClaims.from(parser.parseClaimsJws(token).getBody());
+            verifiedTokens.put(digest, claims);
+            return claims;
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
     }
 
     public <T> T getClaim(String token, Function<Claims, T> resolver) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = parser.parseClaimsJws(token).getBody();
         return resolver.apply(claims);
     }
 
+    /**
+     * Ключ кэша: сам токен не хранится в памяти.
+     */
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Запись кэша истекает вместе с самим токеном.
+     */
+    private static final class UntilTokenExpires implements Expiry<String, JwtClaims> {
+        @Override
+        public long expireAfterCreate(String digest, JwtClaims claims, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), claims.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, JwtClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String digest, JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     /**
      * Кодировка в Base64.
      */
@@ -0,0 +1,147 @@
+package com.example.bankcards.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Считает SQL-операторы Hibernate, выполненные в текущем потоке между {@link #begin()} и {@link #end()}
+ * (границы ставит {@link SqlStatementFilter} вокруг HTTP-запроса), и число повторов каждого текста запроса.
+ * Запросы через JdbcTemplate в обход Hibernate не учитываются.
+ * Работа асинхронного запроса в другом потоке учитывается, только если ее обернуть в {@link #within}
+ * (так делает вход на пуле BCrypt); иначе, например в @Async или потоковом экспорте, она не видна.
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector {
+    private final ThreadLocal<Statements> current = new ThreadLocal<>();
+    private final List<Consumer<Statements>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        Statements statements = current.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Начинает подсчет в текущем потоке.
+     */
+    public void begin(String endpoint) {
+        current.set(new Statements(endpoint));
+    }
+
+    /**
+     * Число операторов с начала подсчета в текущем потоке; 0 вне запроса.
+     */
+    public int count() {
+        Statements statements = current.get();
+        return statements == null ? 0 : statements.count();
+    }
+
+    /**
+     * Завершает подсчет, уведомляет слушателей и возвращает итог; null, если подсчет не начинался.
+     */
+    public Statements end() {
+        Statements statements = current.get();
+        current.remove();
+        if (statements != null) {
+            listeners.forEach(listener -> listener.accept(statements));
+        }
+        return statements;
+    }
+
+    /**
+     * Текущий подсчет, чтобы продолжить его в другом потоке; null вне подсчета.
+     */
+    public Statements current() {
+        return current.get();
+    }
+
+    /**
+     * Выполняет действие в текущем потоке, добавляя его операторы к подсчету, начатому в другом потоке.
+     */
+    public <T> T within(Statements statements, Supplier<T> action) {
+        if (statements == null) {
+            return action.get();
+        }
+        Statements previous = current.get();
+        current.set(statements);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Снимает подсчет с текущего потока без итога: запрос продолжится асинхронно.
+     */
+    public Statements suspend() {
+        Statements statements = current.get();
+        current.remove();
+        return statements;
+    }
+
+    /**
+     * Продолжает подсчет, снятый {@link #suspend()}, в текущем потоке.
+     */
+    public void resume(Statements statements) {
+        current.set(statements);
+    }
+
+    /**
+     * Подписка на итоги запросов (тесты с бюджетом операторов).
+     */
+    public void addListener(Consumer<Statements> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Statements> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Операторы одного запроса. Асинхронный запрос пишет их из нескольких потоков по очереди.
+     */
+    public static final class Statements {
+        private final String endpoint;
+        private final Map<String, Integer> bySql = new HashMap<>();
+        private int count;
+
+        Statements(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized void add(String sql) {
+            count++;
+            bySql.merge(sql, 1, Integer::sum);
+        }
+
+        public String endpoint() {
+            return endpoint;
+        }
+
+        public synchronized int count() {
+            return count;
+        }
+
+        /**
+         * Самый частый текст запроса и число его выполнений — признак N+1, если их много.
+         */
+        public synchronized Map.Entry<String, Integer> mostRepeated() {
+            return bySql.entrySet().stream().max(Map.Entry.comparingByValue()).orElse(null);
+        }
+    }
+}
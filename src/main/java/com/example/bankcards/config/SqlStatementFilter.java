@@ -0,0 +1,120 @@
+package com.example.bankcards.config;
+
+import io.micrometer.observation.Observation;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Считает SQL-операторы каждого HTTP-запроса, включая фильтры безопасности (стоит сразу перед ними,
+ * после RequestContextFilter).
+ * Итог пишется в таймер bank.sql.statements с тегами endpoint и statements (интервал числа операторов);
+ * при app.sql-statements.response-header=true (профиль dev) — еще и в заголовок X-SQL-Statements.
+ * Если один и тот же запрос выполнился не меньше app.sql-statements.repeat-threshold раз, пишется предупреждение о N+1.
+ * Асинхронный запрос (вход) считается до асинхронного диспетчера: подсчет и замер переносятся в атрибут запроса
+ * и завершаются, когда результат готов.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+public class SqlStatementFilter extends OncePerRequestFilter {
+    public static final String HEADER = "X-SQL-Statements";
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementFilter.class);
+    private static final int MAX_LOGGED_SQL = 300;
+    private static final String ASYNC_ATTRIBUTE = SqlStatementFilter.class.getName() + ".async";
+
+    private final SqlStatementCounter counter;
+    private final EndpointObservations observations;
+    private final boolean responseHeader;
+    private final int repeatThreshold;
+
+    public SqlStatementFilter(SqlStatementCounter counter,
+                              EndpointObservations observations,
+                              @Value("${app.sql-statements.response-header:false}") boolean responseHeader,
+                              @Value("${app.sql-statements.repeat-threshold:10}") int repeatThreshold) {
+        this.counter = counter;
+        this.observations = observations;
+        this.responseHeader = responseHeader;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    /**
+     * Асинхронный диспетчер тоже проходит через фильтр, чтобы завершить подсчет.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Observation observation;
+        if (isAsyncDispatch(request) && request.getAttribute(ASYNC_ATTRIBUTE) instanceof Suspended suspended) {
+            request.removeAttribute(ASYNC_ATTRIBUTE);
+            observation = suspended.observation();
+            counter.resume(suspended.statements());
+        } else {
+            observation = observations.start("bank.sql.statements");
+            counter.begin(EndpointObservations.currentEndpoint());
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.setAttribute(ASYNC_ATTRIBUTE, new Suspended(observation, counter.suspend()));
+            } else {
+                finish(observation, counter.end(), response);
+            }
+        }
+    }
+
+    private void finish(Observation observation, SqlStatementCounter.Statements statements, HttpServletResponse response) {
+        if (responseHeader && !response.isCommitted()) {
+            response.setHeader(HEADER, Integer.toString(statements.count()));
+        }
+        observation.lowCardinalityKeyValue("statements", bucket(statements.count())).stop();
+        Map.Entry<String, Integer> repeated = statements.mostRepeated();
+        if (repeated != null && repeated.getValue() >= repeatThreshold) {
+            log.warn("Possible N+1 in {}: {} statements, {} of them: {}", statements.endpoint(), statements.count(),
+                    repeated.getValue(), abbreviate(repeated.getKey()));
+        }
+    }
+
+    /**
+     * Интервалы вместо точного числа, чтобы тег оставался низкокардинальным.
+     */
+    static String bucket(int count) {
+        if (count <= 2) {
+            return Integer.toString(count);
+        }
+        if (count <= 5) {
+            return "3-5";
+        }
+        if (count <= 10) {
+            return "6-10";
+        }
+        if (count <= 20) {
+            return "11-20";
+        }
+        return "21+";
+    }
+
+    private static String abbreviate(String sql) {
+        String oneLine = sql.replaceAll("\\s+", " ");
+        return oneLine.length() <= MAX_LOGGED_SQL ? oneLine : oneLine.substring(0, MAX_LOGGED_SQL) + "...";
+    }
+
+    /** Подсчет и замер асинхронного запроса между исходным и асинхронным диспетчером. */
+    private record Suspended(Observation observation, SqlStatementCounter.Statements statements) {}
+}
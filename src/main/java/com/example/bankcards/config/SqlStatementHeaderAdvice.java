@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Ставит X-SQL-Statements перед записью тела ответа: большое тело фиксирует заголовки раньше,
+ * чем {@link SqlStatementFilter} успеет их дописать. Включается app.sql-statements.response-header=true.
+ */
+@RestControllerAdvice
+@ConditionalOnProperty(name = "app.sql-statements.response-header", havingValue = "true")
+public class SqlStatementHeaderAdvice implements ResponseBodyAdvice<Object> {
+    private final SqlStatementCounter counter;
+
+    public SqlStatementHeaderAdvice(SqlStatementCounter counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        response.getHeaders().set(SqlStatementFilter.HEADER, Integer.toString(counter.count()));
+        return body;
+    }
+}
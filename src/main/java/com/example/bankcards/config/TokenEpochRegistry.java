@@ -0,0 +1,89 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.UserChangedEvent;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Локальный снимок эпох токенов пользователей, обновляемый в фоне.
+ * Хранит только пользователей с отозванными токенами или отключенных,
+ * для остальных эпоха равна нулю.
+ */
+@Component
+public class TokenEpochRegistry {
+    private static final Logger log = LoggerFactory.getLogger(TokenEpochRegistry.class);
+    private static final int DISABLED = Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher publisher;
+    private final Duration maxStaleness;
+
+    private volatile Map<Long, Integer> epochs = Map.of();
+    private volatile Instant refreshedAt;
+
+    public TokenEpochRegistry(UserRepository userRepository,
+                              ApplicationEventPublisher publisher,
+                              @Value("${security.jwt.epoch-refresh-ms:30000}") long refreshMs) {
+        this.userRepository = userRepository;
+        this.publisher = publisher;
+        this.maxStaleness = Duration.ofMillis(refreshMs * 3);
+    }
+
+    /**
+     * Перечитывает снимок из базы. При ошибке остается прежний снимок.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${security.jwt.epoch-refresh-ms:30000}")
+    public synchronized void refresh() {
+        try {
+            Map<Long, Integer> snapshot = new HashMap<>();
+            for (UserRepository.TokenEpochView view : userRepository.findRevocationState()) {
+                snapshot.put(view.getId(), view.isEnabled() ? view.getTokenEpoch() : DISABLED);
+            }
+            epochs = Map.copyOf(snapshot);
+            refreshedAt = Instant.now();
+        } catch (RuntimeException e) {
+            log.warn("Token epoch refresh failed, keeping previous snapshot", e);
+        }
+    }
+
+    /**
+     * Снимок можно использовать, только если он не старше трех интервалов обновления.
+     */
+    public boolean isFresh() {
+        Instant at = refreshedAt;
+        return at != null && at.plus(maxStaleness).isAfter(Instant.now());
+    }
+
+    /**
+     * Проверяет, что токен выпущен не раньше последнего отзыва.
+     */
+    public boolean isCurrent(Long userId, int tokenEpoch) {
+        return tokenEpoch >= epochs.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Отзывает все выпущенные пользователю токены.
+     * На других инстансах отзыв вступает в силу со следующим обновлением снимка.
+     * Массовое обновление минует JPA-листенер, поэтому UserChangedEvent публикуется здесь.
+     */
+    @Transactional
+    public void revoke(Long userId) {
+        if (userRepository.incrementTokenEpoch(userId) == 0) {
+            throw new NotFoundException("User not found");
+        }
+        publisher.publishEvent(new UserChangedEvent(userId, null));
+        refresh();
+    }
+}
@@ -1,49 +1,47 @@
 package com.example.bankcards.controller;
 
-import com.example.bankcards.config.JwtService;
+import com.example.bankcards.config.TokenEpochRegistry;
 import com.example.bankcards.dto.LoginRequest;
 import com.example.bankcards.dto.LoginResponse;
-import org.springframework.web.bind.annotation.RestController;
-import jakarta.validation.constraints.Email;
-import jakarta.validation.constraints.NotBlank;
+import com.example.bankcards.service.LoginService;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
-    private final AuthenticationManager authenticationManager;
-    private final JwtService jwtService;
+    private final LoginService loginService;
+    private final TokenEpochRegistry tokenEpochRegistry;
 
-    public AuthController(AuthenticationManager authenticationManager, JwtService jwtService) {
-        this.authenticationManager = authenticationManager;
-        this.jwtService = jwtService;
+    public AuthController(LoginService loginService, TokenEpochRegistry tokenEpochRegistry) {
+        this.loginService = loginService;
+        this.tokenEpochRegistry = tokenEpochRegistry;
     }
 
     /**
-     * Аутентифицирует пользователя и возвращает JWT.
+     * Аутентифицирует пользователя и возвращает JWT. Пароль проверяется на пуле {@link LoginService}
+     * (ответ асинхронный); при перегрузке — 429 с Retry-After.
      */
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@RequestBody LoginRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.email(), request.password())
-        );
-        UserDetails principal = (UserDetails) authentication.getPrincipal();
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("roles", principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
-        String token = jwtService.generateToken(principal.getUsername(), claims);
-        return ResponseEntity.ok(new LoginResponse(token));
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@RequestBody LoginRequest request) {
+        return loginService.login(request).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Отзывает все выданные пользователю токены (только админ).
+     */
+    @PostMapping("/users/{userId}/revoke")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> revoke(@PathVariable Long userId) {
+        tokenEpochRegistry.revoke(userId);
+        return ResponseEntity.noContent().build();
     }
 }
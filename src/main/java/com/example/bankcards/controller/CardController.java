@@ -1,17 +1,29 @@
 package com.example.bankcards.controller;
 
 
+import com.example.bankcards.dto.CardBalanceResponse;
+import com.example.bankcards.dto.CardLookupRequest;
 import com.example.bankcards.dto.CreateCardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CountMode;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.ETagged;
+import com.example.bankcards.dto.SlicePage;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.ETags;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.OffsetDateTime;
+
 /**
  * Контроллер для управления картами: список карт, создание, детализация, смена статуса, удаление.
  */
@@ -26,14 +38,48 @@ public class CardController {
     }
 
     /**
-     * Возвращает список карт. 
+     * Возвращает список карт с ETag страницы. 
      * Админ видит весь спискок, пользователь только свои.
+     * При совпадении If-None-Match — 304 по версиям и балансам, без загрузки карт.
      */
     @GetMapping
     public ResponseEntity<Page<CardResponse>> list(Authentication auth,
                                                    @RequestParam(name = "status", required = false) CardStatus status,
+                                                   @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
                                                    Pageable pageable) {
-        return ResponseEntity.ok(cardService.listCards(auth, status, pageable));
+        if (ifNoneMatch != null) {
+            String eTag = cardService.listCardsETag(auth, status, pageable);
+            if (ETags.matches(ifNoneMatch, eTag)) {
+                return notModified(eTag);
+            }
+        }
+        ETagged<Page<CardResponse>> page = cardService.listCards(auth, status, pageable);
+        return ResponseEntity.ok().eTag(page.eTag()).body(page.body());
+    }
+
+    /**
+     * Возвращает страницу карт без точного подсчета: count=NONE — только признак следующей страницы,
+     * count=APPROXIMATE — еще и оценка общего количества.
+     * С limit запрос уходит в keyset-вариант, count там не нужен.
+     */
+    @GetMapping(params = {"count", "!limit"})
+    public ResponseEntity<SlicePage<CardResponse>> listSlice(Authentication auth,
+                                                             @RequestParam(name = "status", required = false) CardStatus status,
+                                                             @RequestParam(name = "count") CountMode count,
+                                                             Pageable pageable) {
+        return ResponseEntity.ok(cardService.listCardsSlice(auth, status, count, pageable));
+    }
+
+    /**
+     * Возвращает keyset-страницу карт по курсору, без общего количества.
+     * Админ видит все карты, пользователь только свои.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPage<CardResponse>> listAfter(Authentication auth,
+                                                              @RequestParam(name = "status", required = false) CardStatus status,
+                                                              @RequestParam(name = "after", required = false) String after,
+                                                              @RequestParam(name = "limit") int limit) {
+        return ResponseEntity.ok(cardService.listCardsAfter(auth, status, after, limit));
     }
 
     /**
@@ -45,21 +91,51 @@ public class CardController {
     }
 
     /**
-     * Возвращает карту по id.
+     * Находит карту по полному номеру (только админ).
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<CardResponse> lookup(Authentication auth, @RequestBody @Valid CardLookupRequest request) {
+        return ResponseEntity.ok(cardService.findByNumber(auth, request.cardNumber()));
+    }
+
+    /**
+     * Возвращает карту по id с ETag.
+     * При совпадении If-None-Match — 304 по версии и балансу, без загрузки и расшифровки карты.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<CardResponse> get(Authentication auth, @PathVariable Long id) {
-        return ResponseEntity.ok(cardService.get(auth, id));
+    public ResponseEntity<CardResponse> get(Authentication auth, @PathVariable Long id,
+                                            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            String eTag = cardService.eTag(auth, id);
+            if (ETags.matches(ifNoneMatch, eTag)) {
+                return notModified(eTag);
+            }
+        }
+        ETagged<CardResponse> card = cardService.get(auth, id);
+        return ResponseEntity.ok().eTag(card.eTag()).body(card.body());
+    }
+
+    /**
+     * Возвращает баланс карты на момент at (ISO-8601, например 2025-01-31T23:59:59Z); без at — текущий.
+     */
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<CardBalanceResponse> balance(Authentication auth, @PathVariable Long id,
+                                                       @RequestParam(name = "at", required = false)
+                                                       @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime at) {
+        return ResponseEntity.ok(cardService.balanceAt(auth, id, at));
     }
 
     public record StatusChangeRequest(CardStatus status) {}
 
     /**
-     * Меняет статус карты.
+     * Меняет статус карты. С If-Match — только если карта не менялась с выдачи тега, иначе 412.
      */
     @PatchMapping("/{id}/status")
-    public ResponseEntity<CardResponse> changeStatus(Authentication auth, @PathVariable Long id, @RequestBody StatusChangeRequest req) {
-        return ResponseEntity.ok(cardService.changeStatus(auth, id, req.status()));
+    public ResponseEntity<CardResponse> changeStatus(Authentication auth, @PathVariable Long id,
+                                                     @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @RequestBody StatusChangeRequest req) {
+        ETagged<CardResponse> card = cardService.changeStatus(auth, id, req.status(), ifMatch);
+        return ResponseEntity.ok().eTag(card.eTag()).body(card.body());
     }
 
     /**
@@ -70,4 +146,8 @@ public class CardController {
         cardService.delete(auth, id);
         return ResponseEntity.noContent().build();
     }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
 }
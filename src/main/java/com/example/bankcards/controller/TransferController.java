@@ -1,38 +1,124 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CreateTransferRequest;
-import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.TransferResponse;
+import com.example.bankcards.dto.TransferSummaryResponse;
+import com.example.bankcards.service.BatchTransferService;
+import com.example.bankcards.service.CurrentUserResolver;
+import com.example.bankcards.service.IdempotentTransferService;
+import com.example.bankcards.service.TransferExportService;
 import com.example.bankcards.service.TransferService;
+import com.example.bankcards.service.TransferSummaryService;
+import com.example.bankcards.service.UserRef;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.YearMonth;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/transfers")
 public class TransferController {
 
     private final TransferService transferService;
+    private final BatchTransferService batchTransferService;
+    private final IdempotentTransferService idempotentTransferService;
+    private final TransferExportService transferExportService;
+    private final TransferSummaryService transferSummaryService;
+    private final CurrentUserResolver currentUserResolver;
 
-    public TransferController(TransferService transferService) {
+    public TransferController(TransferService transferService, BatchTransferService batchTransferService,
+                              IdempotentTransferService idempotentTransferService, TransferExportService transferExportService,
+                              TransferSummaryService transferSummaryService, CurrentUserResolver currentUserResolver) {
         this.transferService = transferService;
+        this.batchTransferService = batchTransferService;
+        this.idempotentTransferService = idempotentTransferService;
+        this.transferExportService = transferExportService;
+        this.transferSummaryService = transferSummaryService;
+        this.currentUserResolver = currentUserResolver;
     }
 
     /**
      * Возвращает постраничный список переводов текущего пользователя.
      */
     @GetMapping
-    public ResponseEntity<Page<Transfer>> list(Authentication auth, Pageable pageable) {
+    public ResponseEntity<Page<TransferResponse>> list(Authentication auth, Pageable pageable) {
         return ResponseEntity.ok(transferService.list(auth, pageable));
     }
 
+    /**
+     * Возвращает keyset-страницу переводов текущего пользователя (новые сначала), без общего количества.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPage<TransferResponse>> listBefore(Authentication auth,
+                                                                   @RequestParam(name = "after", required = false) String after,
+                                                                   @RequestParam(name = "limit") int limit) {
+        return ResponseEntity.ok(transferService.listBefore(auth, after, limit));
+    }
+
+    /**
+     * Возвращает месячные итоги переводов по картам текущего пользователя за месяцы [from, to]
+     * (формат 2025-01); по умолчанию — последние 12 месяцев.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<List<TransferSummaryResponse>> summary(Authentication auth,
+                                                                 @RequestParam(name = "from", required = false)
+                                                                 @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+                                                                 @RequestParam(name = "to", required = false)
+                                                                 @DateTimeFormat(pattern = "yyyy-MM") YearMonth to) {
+        return ResponseEntity.ok(transferSummaryService.list(auth, from, to));
+    }
+
+    /**
+     * Выгружает всю историю переводов текущего пользователя потоком (NDJSON или CSV).
+     * Пользователь определяется до начала выгрузки, сами строки пишутся в отдельном потоке.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(Authentication auth,
+                                                        @RequestParam(name = "format", defaultValue = "NDJSON") ExportFormat format) {
+        UserRef user = currentUserResolver.resolve(auth);
+        StreamingResponseBody body = out -> transferExportService.export(user, format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transfers." + format.extension() + "\"")
+                .body(body);
+    }
+
     /**
      * Создает перевод между двумя картами, принадлежащими текущему пользователю.
+     * С заголовком Idempotency-Key повтор запроса возвращает исходный перевод.
      */
     @PostMapping
-    public ResponseEntity<Transfer> create(Authentication auth, @RequestBody @Valid CreateTransferRequest request) {
-        return ResponseEntity.status(201).body(transferService.create(auth, request));
+    public ResponseEntity<TransferResponse> create(Authentication auth,
+                                                   @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                                   @RequestBody @Valid CreateTransferRequest request) {
+        TransferResponse transfer = idempotencyKey == null
+                ? transferService.create(auth, request)
+                : idempotentTransferService.create(auth, idempotencyKey, request);
+        return ResponseEntity.status(201).body(transfer);
+    }
+
+    /**
+     * Создает пакет переводов в одной транзакции с результатом по каждому элементу.
+     * 201 если создан хотя бы один перевод, иначе 422.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchTransferResponse> createBatch(Authentication auth, @RequestBody @Valid BatchTransferRequest request) {
+        BatchTransferResponse response = batchTransferService.createBatch(auth, request);
+        HttpStatus status = response.created() > 0 ? HttpStatus.CREATED : HttpStatus.UNPROCESSABLE_ENTITY;
+        return ResponseEntity.status(status).body(response);
     }
 }
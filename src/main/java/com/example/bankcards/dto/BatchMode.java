@@ -0,0 +1,11 @@
+package com.example.bankcards.dto;
+
+/**
+ * Семантика пакетного перевода.
+ */
+public enum BatchMode {
+    /** Либо проходят все переводы пакета, либо ни один. */
+    ALL_OR_NOTHING,
+    /** Проходят все корректные переводы, отклоненные пропускаются. */
+    BEST_EFFORT
+}
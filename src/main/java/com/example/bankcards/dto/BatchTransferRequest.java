@@ -0,0 +1,16 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Пакет переводов между картами пользователя, применяемый в одной транзакции.
+ */
+public record BatchTransferRequest(
+        @NotNull BatchMode mode,
+        @NotEmpty @Size(max = 500) List<@NotNull @Valid CreateTransferRequest> transfers
+) {}
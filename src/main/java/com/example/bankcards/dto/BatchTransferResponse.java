@@ -0,0 +1,13 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+/**
+ * Ответ на пакетный перевод с результатом по каждому элементу.
+ */
+public record BatchTransferResponse(
+        BatchMode mode,
+        int created,
+        int rejected,
+        List<BatchTransferResult> results
+) {}
@@ -0,0 +1,30 @@
+package com.example.bankcards.dto;
+
+/**
+ * Результат одного перевода из пакета.
+ *
+ * @param index      позиция перевода в запросе
+ * @param status     CREATED, REJECTED или SKIPPED (не применен из-за отказа пакета)
+ * @param transferId id созданного перевода, если он создан
+ * @param error      причина отказа, если перевод отклонен
+ */
+public record BatchTransferResult(int index, Status status, Long transferId, String error) {
+
+    public enum Status {
+        CREATED,
+        REJECTED,
+        SKIPPED
+    }
+
+    public static BatchTransferResult created(int index, Long transferId) {
+        return new BatchTransferResult(index, Status.CREATED, transferId, null);
+    }
+
+    public static BatchTransferResult rejected(int index, String error) {
+        return new BatchTransferResult(index, Status.REJECTED, null, error);
+    }
+
+    public static BatchTransferResult skipped(int index) {
+        return new BatchTransferResult(index, Status.SKIPPED, null, null);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Баланс карты на момент времени.
+ */
+public record CardBalanceResponse(Long cardId, OffsetDateTime at, long balanceMinor) {}
@@ -0,0 +1,11 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+
+/**
+ * Поиск карты по полному номеру (номер передается в теле, а не в URL, чтобы не попадать в логи).
+ */
+public record CardLookupRequest(
+        @NotBlank @Pattern(regexp = "\\d{16}") String cardNumber
+) {}
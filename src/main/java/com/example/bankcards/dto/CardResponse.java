@@ -17,15 +17,24 @@ public record CardResponse(
         CardStatus status,
         Long balanceMinor
 ) {
-    /** Маппер для сущности с исходным номером карты в ответе. */
-    public static CardResponse from(Card card, String plainNumber) {
+    /** Маппер для сущности по сохраненным последним 4 цифрам, без расшифровки. */
+    public static CardResponse from(Card card, long balanceMinor) {
+        return from(card, card.getCardLast4(), balanceMinor);
+    }
+
+    /**
+     * Маппер для сущности с исходным номером карты в ответе.
+     *
+     * @param balanceMinor текущий баланс (снимок карты плюс проводки после него)
+     */
+    public static CardResponse from(Card card, String plainNumber, long balanceMinor) {
         return new CardResponse(
                 card.getId(),
                 CardMasker.mask(plainNumber),
                 card.getOwnerName(),
                 card.getExpiration(),
                 card.getStatus(),
-                card.getBalanceMinor()
+                balanceMinor
         );
     }
 }
@@ -0,0 +1,11 @@
+package com.example.bankcards.dto;
+
+/**
+ * Режим подсчета для списка без точного COUNT(*).
+ */
+public enum CountMode {
+    /** Только признак следующей страницы. */
+    NONE,
+    /** Признак следующей страницы и оценка общего количества по статистике планировщика. */
+    APPROXIMATE
+}
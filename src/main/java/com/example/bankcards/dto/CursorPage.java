@@ -0,0 +1,9 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+/**
+ * Страница keyset-пагинации: элементы и курсор следующей страницы (null, если она последняя).
+ * Общее количество не считается.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {}
@@ -0,0 +1,6 @@
+package com.example.bankcards.dto;
+
+/**
+ * Тело ответа вместе с ETag его представления.
+ */
+public record ETagged<T>(T body, String eTag) {}
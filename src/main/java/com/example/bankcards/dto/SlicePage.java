@@ -0,0 +1,9 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+/**
+ * Страница без точного подсчета: элементы, номер и размер страницы, признак следующей страницы.
+ * approximateTotal — оценка общего количества (null, если не запрошена или недоступна).
+ */
+public record SlicePage<T>(List<T> content, int number, int size, boolean hasNext, Long approximateTotal) {}
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Строка выгрузки истории переводов.
+ */
+public record TransferExportRow(
+        Long id,
+        Long fromCardId,
+        Long toCardId,
+        Long amountMinor,
+        OffsetDateTime createdAt
+) {}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Ответ для перевода с маскированными номерами карт.
+ * Заполняется одной JPQL-проекцией, без загрузки сущностей карт и пользователя.
+ */
+public record TransferResponse(
+        Long id,
+        Long fromCardId,
+        String fromCardMasked,
+        Long toCardId,
+        String toCardMasked,
+        Long amountMinor,
+        OffsetDateTime createdAt
+) {}
@@ -0,0 +1,30 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.TransferSummary;
+
+import java.time.YearMonth;
+
+/**
+ * Итоги переводов по карте за месяц: отправлено и получено (число и сумма), самый крупный перевод.
+ */
+public record TransferSummaryResponse(
+        YearMonth month,
+        Long cardId,
+        Long sentCount,
+        Long sentMinor,
+        Long receivedCount,
+        Long receivedMinor,
+        Long largestMinor
+) {
+    public static TransferSummaryResponse from(TransferSummary summary) {
+        return new TransferSummaryResponse(
+                YearMonth.from(summary.getMonthStart()),
+                summary.getCardId(),
+                summary.getSentCount(),
+                summary.getSentMinor(),
+                summary.getReceivedCount(),
+                summary.getReceivedMinor(),
+                summary.getLargestMinor()
+        );
+    }
+}
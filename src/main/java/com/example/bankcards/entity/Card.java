@@ -9,9 +9,11 @@ import lombok.Setter;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 
 /**
- * Сущность карты с зашифрованным номером, статусом и балансом.
+ * Сущность карты с зашифрованным номером, статусом и снимком баланса.
+ * Движения средств хранятся в {@link LedgerEntry}; текущий баланс — снимок плюс проводки после balanceAsOf.
  */
 @Getter
 @Setter
@@ -21,19 +23,29 @@ import java.time.OffsetDateTime;
 @Entity
 @Table(name = "cards")
 public class Card {
+    /** Начало учета: снимок на этот момент — начальный баланс карты, все проводки идут после него. */
+    public static final OffsetDateTime BALANCE_ORIGIN = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
-    @Column(name = "card_number_enc", nullable = false, columnDefinition = "text")
-    private String cardNumberEncrypted;
+    /** IV (12 байт) и AES-GCM шифртекст номера карты одним значением. */
+    @Column(name = "card_number_ct", nullable = false)
+    private byte[] cardNumberCiphertext;
+
+    /** Последние 4 цифры номера, чтобы маскировать без расшифровки. */
+    @Column(name = "card_last4", length = 4)
+    private String cardLast4;
 
-    @Column(name = "card_number_iv", nullable = false, columnDefinition = "text")
-    private String cardNumberIv;
+    /** Слепой индекс номера (HMAC-SHA256), для поиска и проверки дубликатов без расшифровки. */
+    @Column(name = "card_number_hmac", length = 32, unique = true)
+    private byte[] cardNumberHmac;
 
     @Column(name = "owner_name", nullable = false, length = 255)
     private String ownerName;
@@ -45,12 +57,22 @@ public class Card {
     @Column(name = "status", nullable = false, length = 20)
     private CardStatus status;
 
+    /** Баланс на момент balanceAsOf; сдвигается вперед LedgerSnapshotJob, а не каждым переводом. */
     @Column(name = "balance_minor", nullable = false)
     private Long balanceMinor;
 
+    /** Момент снимка баланса: проводки с created_at позже него в balanceMinor еще не учтены. */
+    @Column(name = "balance_as_of", nullable = false)
+    private OffsetDateTime balanceAsOf;
+
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
+    /** Версия строки для оптимистичной блокировки; переводы ее не меняют, они пишут только проводки. */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @PrePersist
     void onCreate() {
         if (createdAt == null) {
@@ -62,5 +84,8 @@ public class Card {
         if (balanceMinor == null) {
             balanceMinor = 0L;
         }
+        if (balanceAsOf == null) {
+            balanceAsOf = BALANCE_ORIGIN;
+        }
     }
 }
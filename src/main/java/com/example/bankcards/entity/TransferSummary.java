@@ -0,0 +1,66 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Итоги переводов пользователя по карте за календарный месяц (UTC).
+ * Строки обновляются в транзакции перевода через {@link com.example.bankcards.repository.TransferSummaryWriter}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "transfer_summaries")
+@IdClass(TransferSummary.Key.class)
+public class TransferSummary {
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /** Первый день месяца. */
+    @Id
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+
+    @Id
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "sent_count", nullable = false)
+    private Long sentCount;
+
+    @Column(name = "sent_minor", nullable = false)
+    private Long sentMinor;
+
+    @Column(name = "received_count", nullable = false)
+    private Long receivedCount;
+
+    @Column(name = "received_minor", nullable = false)
+    private Long receivedMinor;
+
+    /** Самый крупный перевод с карты или на карту за месяц. */
+    @Column(name = "largest_minor", nullable = false)
+    private Long largestMinor;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long userId;
+        private LocalDate monthStart;
+        private Long cardId;
+    }
+}
@@ -7,6 +7,10 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import java.time.OffsetDateTime;
 import java.util.HashSet;
@@ -21,10 +25,14 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(UserChangeListener.class)
 @Table(name = "users")
 public class User {
+    public static final String ROLES_CACHE_REGION = "user-roles";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 255)
@@ -39,10 +47,17 @@ public class User {
     @Column(nullable = false)
     private boolean enabled = true;
 
+    /** Эпоха токенов: выданные с меньшим значением JWT считаются отозванными. */
+    @Column(name = "token_epoch", nullable = false)
+    private int tokenEpoch;
+
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
+    /** Id ролей кэшируются (регион user-roles), сами роли берутся из кэша сущности Role; загрузка отдельным select без join. */
     @ManyToMany(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.ROLES_CACHE_REGION)
     @JoinTable(
             name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
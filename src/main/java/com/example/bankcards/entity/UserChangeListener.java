@@ -0,0 +1,26 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA-листенер пользователя: публикует UserChangedEvent после изменения или удаления.
+ * Событие публикуется при flush, внутри транзакции; кэши сбрасываются обработчиками после коммита.
+ * Массовые JPQL-обновления листенер не видят, их вызывающий код публикует событие сам.
+ */
+@Component
+public class UserChangeListener {
+    private final ApplicationEventPublisher publisher;
+
+    public UserChangeListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void onChange(User user) {
+        publisher.publishEvent(new UserChangedEvent(user.getId(), user.getEmail()));
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.bankcards.entity;
+
+/**
+ * Событие изменения или удаления пользователя (для сброса кэшей).
+ */
+public record UserChangedEvent(Long userId, String email) {}
@@ -0,0 +1,21 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+/**
+ * Запрос отклонен из-за перегрузки; клиенту отдается заголовок Retry-After.
+ */
+public class TooManyRequestsException extends ApiException {
+    private final Duration retryAfter;
+
+    public TooManyRequestsException(String message, Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
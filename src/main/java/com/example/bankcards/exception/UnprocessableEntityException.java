@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class UnprocessableEntityException extends ApiException {
+    public UnprocessableEntityException(String message) {
+        super(HttpStatus.UNPROCESSABLE_ENTITY, message);
+    }
+}
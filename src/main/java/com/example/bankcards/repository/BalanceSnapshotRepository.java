@@ -0,0 +1,25 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BalanceSnapshot;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    /** Последние снимки карты не позже указанного момента (индекс card_id, as_of). */
+    @Query("select s from BalanceSnapshot s where s.card.id = :cardId and s.asOf <= :at order by s.asOf desc")
+    List<BalanceSnapshot> findLatest(@Param("cardId") Long cardId, @Param("at") OffsetDateTime at, Limit limit);
+
+    /** Сохраняет в историю текущие снимки баланса карт, сделанные на момент asOf. */
+    @Modifying
+    @Query("insert into BalanceSnapshot (card, asOf, balanceMinor) " +
+            "select c, c.balanceAsOf, c.balanceMinor from Card c where c.id in :cardIds and c.balanceAsOf = :asOf")
+    int copyFromCards(@Param("cardIds") Collection<Long> cardIds, @Param("asOf") OffsetDateTime asOf);
+}
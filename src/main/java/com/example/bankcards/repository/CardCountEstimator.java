@@ -0,0 +1,71 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Оценка количества карт по статистике планировщика PostgreSQL вместо COUNT(*).
+ * Без фильтров берется pg_class.reltuples, с фильтрами — ожидаемое число строк из EXPLAIN.
+ * На других СУБД и для таблицы без собранной статистики возвращает null.
+ */
+@Repository
+public class CardCountEstimator {
+
+    private static final String TABLE_ESTIMATE = "select reltuples::bigint from pg_class where oid = 'cards'::regclass";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private volatile Boolean postgres;
+
+    public CardCountEstimator(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param userId владелец карт или null для всех
+     * @param status статус карт или null для любого
+     */
+    public Long estimate(Long userId, CardStatus status) {
+        if (!isPostgres()) {
+            return null;
+        }
+        if (userId == null && status == null) {
+            Long rows = jdbcTemplate.queryForObject(TABLE_ESTIMATE, Long.class);
+            return rows != null && rows >= 0 ? rows : null;
+        }
+        StringBuilder sql = new StringBuilder("explain (format json) select 1 from cards where true");
+        List<Object> args = new ArrayList<>(2);
+        if (userId != null) {
+            sql.append(" and user_id = ?");
+            args.add(userId);
+        }
+        if (status != null) {
+            sql.append(" and status = ?");
+            args.add(status.name());
+        }
+        String plan = jdbcTemplate.queryForObject(sql.toString(), String.class, args.toArray());
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unexpected EXPLAIN output", e);
+        }
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) c ->
+                    "PostgreSQL".equals(c.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return result;
+    }
+}
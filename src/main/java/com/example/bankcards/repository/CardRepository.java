@@ -2,13 +2,147 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
-import com.example.bankcards.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface CardRepository extends JpaRepository<Card, Long> {
-    Page<Card> findByUser(User user, Pageable pageable);
-    Page<Card> findByUserAndStatus(User user, CardStatus status, Pageable pageable);
+    Page<Card> findByUserId(Long userId, Pageable pageable);
+    Page<Card> findByUserIdAndStatus(Long userId, CardStatus status, Pageable pageable);
     Page<Card> findByStatus(CardStatus status, Pageable pageable);
+
+    /** Варианты без COUNT(*): читают на одну строку больше страницы, чтобы узнать о следующей. */
+    Slice<Card> findSliceBy(Pageable pageable);
+    Slice<Card> findSliceByStatus(CardStatus status, Pageable pageable);
+    Slice<Card> findSliceByUserId(Long userId, Pageable pageable);
+    Slice<Card> findSliceByUserIdAndStatus(Long userId, CardStatus status, Pageable pageable);
+
+    /** Keyset-страница карт пользователя после указанного id (индекс user_id, id). */
+    @Query("select c from Card c where c.user.id = :userId and c.id > :afterId order by c.id")
+    List<Card> findByUserIdAfter(@Param("userId") Long userId, @Param("afterId") long afterId, Limit limit);
+
+    /** Keyset-страница карт пользователя в статусе после указанного id (индекс user_id, status, id). */
+    @Query("select c from Card c where c.user.id = :userId and c.status = :status and c.id > :afterId order by c.id")
+    List<Card> findByUserIdAndStatusAfter(@Param("userId") Long userId, @Param("status") CardStatus status,
+                                          @Param("afterId") long afterId, Limit limit);
+
+    /** Keyset-страница всех карт после указанного id (первичный ключ). */
+    @Query("select c from Card c where c.id > :afterId order by c.id")
+    List<Card> findAllAfter(@Param("afterId") long afterId, Limit limit);
+
+    /** Keyset-страница карт в статусе после указанного id (индекс status, id). */
+    @Query("select c from Card c where c.status = :status and c.id > :afterId order by c.id")
+    List<Card> findByStatusAfter(@Param("status") CardStatus status, @Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Блокирует карту для списания (FOR UPDATE): списания с одной карты идут по очереди,
+     * чтобы проверка баланса видела все предыдущие.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findForUpdateById(@Param("id") Long id);
+
+    /**
+     * Разделяемая блокировка карты для зачисления (FOR SHARE): зачисления на одну карту не ждут друг друга,
+     * но смена статуса и сдвиг снимка баланса ждут их завершения.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findForShareById(@Param("id") Long id);
+
+    /** Блокирует карты в порядке возрастания id перед сдвигом снимков баланса. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> lockAll(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Переносит в снимок баланса проводки до until включительно и сдвигает balanceAsOf на until.
+     * Карты, чей снимок уже не раньше until, не меняются.
+     */
+    @Modifying
+    @Query("update Card c set c.balanceMinor = c.balanceMinor + coalesce((select sum(e.amountMinor) from LedgerEntry e " +
+            "where e.card = c and e.createdAt > c.balanceAsOf and e.createdAt <= :until), 0), c.balanceAsOf = :until " +
+            "where c.id in :ids and c.balanceAsOf < :until")
+    int rollBalances(@Param("ids") Collection<Long> ids, @Param("until") OffsetDateTime until);
+
+    /** Самый поздний момент снимка баланса среди карт; null, если карт нет. */
+    @Query("select max(c.balanceAsOf) from Card c")
+    OffsetDateTime findLatestBalanceAsOf();
+
+    /** Версия, владелец и текущий баланс карт (снимок плюс проводки после него) без загрузки сущностей. */
+    String VERSION_SELECT = "select c.id as id, c.user.id as userId, c.version as version, " +
+            "c.balanceMinor + coalesce((select sum(e.amountMinor) from LedgerEntry e " +
+            "where e.card = c and e.createdAt > c.balanceAsOf), 0) as balanceMinor from Card c ";
+
+    /** Версия и баланс одной карты для ответа на If-None-Match. */
+    @Query(VERSION_SELECT + "where c.id = :id")
+    Optional<CardVersionView> findVersionById(@Param("id") Long id);
+
+    /** Версии для тех же страниц, что findAll/findByStatus/findByUserId/findByUserIdAndStatus. */
+    @Query(value = VERSION_SELECT, countQuery = "select count(c) from Card c")
+    Page<CardVersionView> findVersionsBy(Pageable pageable);
+
+    @Query(value = VERSION_SELECT + "where c.status = :status",
+            countQuery = "select count(c) from Card c where c.status = :status")
+    Page<CardVersionView> findVersionsByStatus(@Param("status") CardStatus status, Pageable pageable);
+
+    @Query(value = VERSION_SELECT + "where c.user.id = :userId",
+            countQuery = "select count(c) from Card c where c.user.id = :userId")
+    Page<CardVersionView> findVersionsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(value = VERSION_SELECT + "where c.user.id = :userId and c.status = :status",
+            countQuery = "select count(c) from Card c where c.user.id = :userId and c.status = :status")
+    Page<CardVersionView> findVersionsByUserIdAndStatus(@Param("userId") Long userId, @Param("status") CardStatus status,
+                                                        Pageable pageable);
+
+    /** Поиск по слепому индексу номера: одна проба уникального индекса. */
+    Optional<Card> findByCardNumberHmac(byte[] cardNumberHmac);
+
+    boolean existsByCardNumberHmac(byte[] cardNumberHmac);
+
+    /** Карты без last4 или без HMAC номера после указанного id, по возрастанию id (для фонового заполнения). */
+    @Query("select c.id as id, c.cardNumberCiphertext as cardNumberCiphertext, " +
+            "c.cardLast4 as cardLast4, c.cardNumberHmac as cardNumberHmac " +
+            "from Card c where (c.cardLast4 is null or c.cardNumberHmac is null) and c.id > :afterId order by c.id")
+    List<EncryptedNumberView> findIncomplete(@Param("afterId") Long afterId, Limit limit);
+
+    @Modifying
+    @Query("update Card c set c.cardLast4 = :last4 where c.id = :id and c.cardLast4 is null")
+    int setLast4(@Param("id") Long id, @Param("last4") String last4);
+
+    /**
+     * Записывает HMAC номера, если он не занят другой картой.
+     *
+     * @return 0, если номер дублирует уже проиндексированную карту (эта остается без HMAC)
+     */
+    @Modifying
+    @Query("update Card c set c.cardNumberHmac = :hmac where c.id = :id and c.cardNumberHmac is null " +
+            "and not exists (select 1 from Card d where d.cardNumberHmac = :hmac)")
+    int setNumberHmac(@Param("id") Long id, @Param("hmac") byte[] hmac);
+
+    interface CardVersionView {
+        Long getId();
+        Long getUserId();
+        Long getVersion();
+        Long getBalanceMinor();
+    }
+
+    interface EncryptedNumberView {
+        Long getId();
+        byte[] getCardNumberCiphertext();
+        String getCardLast4();
+        byte[] getCardNumberHmac();
+    }
 }
@@ -0,0 +1,42 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.LedgerEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /** Сумма проводок карты в интервале (after, until] (индекс card_id, created_at). */
+    @Query("select coalesce(sum(e.amountMinor), 0) from LedgerEntry e " +
+            "where e.card.id = :cardId and e.createdAt > :after and e.createdAt <= :until")
+    long sumBetween(@Param("cardId") Long cardId, @Param("after") OffsetDateTime after, @Param("until") OffsetDateTime until);
+
+    /** Сумма проводок карты после момента ее снимка баланса. */
+    @Query("select coalesce(sum(e.amountMinor), 0) from LedgerEntry e where e.card.id = :cardId and e.createdAt > :after")
+    long sumAfter(@Param("cardId") Long cardId, @Param("after") OffsetDateTime after);
+
+    /**
+     * Суммы проводок после снимка баланса для набора карт одним запросом; карт без таких проводок в ответе нет.
+     */
+    @Query("select e.card.id as cardId, sum(e.amountMinor) as amountMinor from LedgerEntry e " +
+            "where e.card.id in :cardIds and e.createdAt > e.card.balanceAsOf group by e.card.id")
+    List<CardAmount> sumAfterSnapshot(@Param("cardIds") Collection<Long> cardIds);
+
+    /** Карты с проводками в интервале (after, until], по возрастанию id после afterId (индекс created_at). */
+    @Query("select distinct e.card.id from LedgerEntry e " +
+            "where e.createdAt > :after and e.createdAt <= :until and e.card.id > :afterId order by e.card.id")
+    List<Long> findCardIdsWithEntries(@Param("after") OffsetDateTime after, @Param("until") OffsetDateTime until,
+                                      @Param("afterId") long afterId, Limit limit);
+
+    interface CardAmount {
+        Long getCardId();
+
+        Long getAmountMinor();
+    }
+}
@@ -1,10 +1,20 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Role;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.Optional;
 
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    String BY_NAME_CACHE_REGION = "role-by-name";
+
+    /** Результат кэшируется в регионе role-by-name и сбрасывается при любом изменении таблицы roles. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = BY_NAME_CACHE_REGION)
+    })
     Optional<Role> findByName(String name);
 }
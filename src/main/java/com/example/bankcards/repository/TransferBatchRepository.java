@@ -0,0 +1,153 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Transfer;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC-операции пакетного перевода: блокировка карт одним запросом,
+ * пакетная вставка переводов и их проводок в журнал.
+ * Id строк берутся у генераторов сущностей Hibernate: тот же оптимизатор pooled-lo выдает id блоками
+ * по allocationSize, поэтому JDBC-вставки и сохранение через JPA не пересекаются по id и не зависят
+ * от значения по умолчанию колонки id.
+ */
+@Repository
+public class TransferBatchRepository {
+
+    private static final String LOCK_CARDS =
+            "select id, status, balance_minor from cards where user_id = :userId and id in (:ids) order by id for update";
+    private static final String SUM_SINCE_SNAPSHOT =
+            "select e.card_id, sum(e.amount_minor) as amount_minor from ledger_entries e join cards c on c.id = e.card_id " +
+            "where e.card_id in (:ids) and e.created_at > c.balance_as_of group by e.card_id";
+    private static final String INSERT_ENTRY =
+            "insert into ledger_entries (id, card_id, transfer_id, amount_minor, created_at) values (?, ?, ?, ?, ?)";
+    private static final String INSERT_TRANSFER =
+            "insert into transfers (id, user_id, from_card_id, to_card_id, amount_minor, created_at) values (?, ?, ?, ?, ?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final EntityManager entityManager;
+
+    public TransferBatchRepository(NamedParameterJdbcTemplate jdbc, EntityManager entityManager) {
+        this.jdbc = jdbc;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Блокирует карты пользователя в порядке возрастания id и возвращает их состояние с текущим балансом.
+     * Проводки после снимка суммируются отдельным запросом уже после блокировки, чтобы учесть
+     * все переводы, завершившиеся до нее. Чужие и несуществующие карты в результат не попадают.
+     */
+    public Map<Long, LockedCard> lockCards(Long userId, Collection<Long> cardIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("ids", cardIds);
+        Map<Long, LockedCard> cards = new LinkedHashMap<>();
+        jdbc.query(LOCK_CARDS, params, rs -> {
+            long id = rs.getLong("id");
+            cards.put(id, new LockedCard(id, CardStatus.valueOf(rs.getString("status")), rs.getLong("balance_minor")));
+        });
+        if (cards.isEmpty()) {
+            return cards;
+        }
+        jdbc.query(SUM_SINCE_SNAPSHOT, new MapSqlParameterSource("ids", cards.keySet()), rs -> {
+            long id = rs.getLong("card_id");
+            LockedCard card = cards.get(id);
+            cards.put(id, new LockedCard(id, card.status(), card.balanceMinor() + rs.getLong("amount_minor")));
+        });
+        return cards;
+    }
+
+    /**
+     * Записывает списание и зачисление каждого перевода одним пакетом.
+     * Карты должны быть заблокированы через {@link #lockCards}.
+     *
+     * @param transferIds id переводов в порядке списка transfers
+     */
+    public void insertLedgerEntries(List<Long> transferIds, List<NewTransfer> transfers) {
+        Timestamp createdAt = Timestamp.from(OffsetDateTime.now().toInstant());
+        List<Long> ids = nextIds(LedgerEntry.class, transfers.size() * 2);
+        jdbc.getJdbcOperations().batchUpdate(INSERT_ENTRY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                NewTransfer t = transfers.get(i / 2);
+                boolean debit = i % 2 == 0;
+                ps.setLong(1, ids.get(i));
+                ps.setLong(2, debit ? t.fromCardId() : t.toCardId());
+                ps.setLong(3, transferIds.get(i / 2));
+                ps.setLong(4, debit ? -t.amountMinor() : t.amountMinor());
+                ps.setTimestamp(5, createdAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return transfers.size() * 2;
+            }
+        });
+    }
+
+    /**
+     * Вставляет переводы одним пакетом с общим временем создания.
+     *
+     * @return id созданных переводов в порядке входного списка
+     */
+    public List<Long> insertTransfers(Long userId, List<NewTransfer> transfers, OffsetDateTime createdAt) {
+        Timestamp created = Timestamp.from(createdAt.toInstant());
+        List<Long> ids = nextIds(Transfer.class, transfers.size());
+        jdbc.getJdbcOperations().batchUpdate(INSERT_TRANSFER, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                NewTransfer t = transfers.get(i);
+                ps.setLong(1, ids.get(i));
+                ps.setLong(2, userId);
+                ps.setLong(3, t.fromCardId());
+                ps.setLong(4, t.toCardId());
+                ps.setLong(5, t.amountMinor());
+                ps.setTimestamp(6, created);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return transfers.size();
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Берет count id у генератора сущности; новый блок из последовательности запрашивается раз в allocationSize id.
+     */
+    private List<Long> nextIds(Class<?> entity, int count) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory()
+                .getMappingMetamodel().getEntityDescriptor(entity).getGenerator();
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add((Long) generator.generate(session, null, null, EventType.INSERT));
+        }
+        return ids;
+    }
+
+    /** Заблокированная карта пользователя; balanceMinor — текущий баланс с учетом журнала. */
+    public record LockedCard(Long id, CardStatus status, long balanceMinor) {}
+
+    /** Перевод для пакетной вставки. */
+    public record NewTransfer(Long fromCardId, Long toCardId, long amountMinor) {}
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.TransferExportRow;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+/**
+ * Потоковое чтение истории переводов через курсор JDBC.
+ * Строки читаются проекцией, поэтому в контексте персистентности не копятся сущности.
+ */
+@Repository
+public class TransferExportRepository {
+
+    private final EntityManager entityManager;
+
+    public TransferExportRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Открывает поток переводов пользователя в порядке (created_at, id).
+     * Должен вызываться в транзакции: драйвер Postgres применяет fetch size только при выключенном autocommit.
+     * Поток нужно закрыть.
+     */
+    public Stream<TransferExportRow> streamByUser(Long userId, int fetchSize) {
+        return entityManager.createQuery(
+                        "select new com.example.bankcards.dto.TransferExportRow(t.id, t.fromCard.id, t.toCard.id, t.amountMinor, t.createdAt) " +
+                                "from Transfer t where t.user.id = :userId order by t.createdAt, t.id",
+                        TransferExportRow.class)
+                .setParameter("userId", userId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
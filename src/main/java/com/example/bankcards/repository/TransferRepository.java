@@ -1,11 +1,48 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.entity.Transfer;
-import com.example.bankcards.entity.User;
+import com.example.bankcards.util.CardMasker;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
-    Page<Transfer> findByUser(User user, Pageable pageable);
+    /**
+     * Проекция перевода в {@link TransferResponse}: карты присоединяются в том же запросе,
+     * маска собирается в SQL из card_last4.
+     */
+    String RESPONSE_SELECT = "select new com.example.bankcards.dto.TransferResponse(t.id, " +
+            "f.id, coalesce(concat('" + CardMasker.MASK_PREFIX + "', f.cardLast4), '" + CardMasker.MASK_UNKNOWN + "'), " +
+            "tc.id, coalesce(concat('" + CardMasker.MASK_PREFIX + "', tc.cardLast4), '" + CardMasker.MASK_UNKNOWN + "'), " +
+            "t.amountMinor, t.createdAt) from Transfer t join t.fromCard f join t.toCard tc ";
+
+    /** Страница переводов пользователя: один запрос данных и отдельный count без соединений. */
+    @Query(value = RESPONSE_SELECT + "where t.user.id = :userId",
+            countQuery = "select count(t) from Transfer t where t.user.id = :userId")
+    Page<TransferResponse> findResponsesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(RESPONSE_SELECT + "where t.id = :id")
+    Optional<TransferResponse> findResponseById(@Param("id") Long id);
+
+    /** Первая keyset-страница переводов пользователя, новые сначала (индекс user_id, created_at). */
+    @Query(RESPONSE_SELECT + "where t.user.id = :userId order by t.createdAt desc, t.id desc")
+    List<TransferResponse> findLatest(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Keyset-страница переводов пользователя, созданных раньше (created_at, id) курсора.
+     * Условие created_at <= :createdAt дает диапазон по индексу, остальное отсекает уже показанные.
+     */
+    @Query(RESPONSE_SELECT + "where t.user.id = :userId " +
+            "and t.createdAt <= :createdAt and (t.createdAt < :createdAt or t.id < :id) " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransferResponse> findBefore(@Param("userId") Long userId, @Param("createdAt") OffsetDateTime createdAt,
+                                      @Param("id") Long id, Limit limit);
 }
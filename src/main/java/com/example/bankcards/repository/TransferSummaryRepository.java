@@ -0,0 +1,18 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TransferSummaryRepository extends JpaRepository<TransferSummary, TransferSummary.Key> {
+
+    /** Итоги пользователя за месяцы [from, to], новые месяцы сначала (первичный ключ user_id, month_start, card_id). */
+    @Query("select s from TransferSummary s where s.userId = :userId and s.monthStart between :from and :to " +
+            "order by s.monthStart desc, s.cardId")
+    List<TransferSummary> findByUserIdAndMonths(@Param("userId") Long userId, @Param("from") LocalDate from,
+                                                @Param("to") LocalDate to);
+}
@@ -0,0 +1,93 @@
+package com.example.bankcards.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Прибавляет движения по картам к месячным итогам одним оператором MERGE на карту, пакетом JDBC.
+ * Вызывается в транзакции перевода, поэтому итоги фиксируются вместе с переводом.
+ */
+@Repository
+public class TransferSummaryWriter {
+
+    private static final String MERGE = """
+            merge into transfer_summaries s
+            using (values (?, ?, ?, ?, ?, ?, ?, ?)) as v(user_id, month_start, card_id,
+                    sent_count, sent_minor, received_count, received_minor, largest_minor)
+            on s.user_id = v.user_id and s.month_start = v.month_start and s.card_id = v.card_id
+            when matched then update set
+                sent_count = s.sent_count + v.sent_count,
+                sent_minor = s.sent_minor + v.sent_minor,
+                received_count = s.received_count + v.received_count,
+                received_minor = s.received_minor + v.received_minor,
+                largest_minor = greatest(s.largest_minor, v.largest_minor)
+            when not matched then insert (user_id, month_start, card_id,
+                    sent_count, sent_minor, received_count, received_minor, largest_minor)
+                values (v.user_id, v.month_start, v.card_id,
+                    v.sent_count, v.sent_minor, v.received_count, v.received_minor, v.largest_minor)
+            """;
+    private static final String UNIQUE_VIOLATION = "23505";
+    /** Вставка, проигравшая параллельной, ждет ее фиксации и падает еще раз; третья попытка уже обновляет строку. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbc;
+
+    public TransferSummaryWriter(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Прибавляет итоги карт за месяц. Карты передаются в порядке возрастания id, чтобы параллельные
+     * переводы блокировали строки итогов в одном порядке.
+     * MERGE не защищает от одновременной вставки новой строки, поэтому оператор выполняется
+     * под точкой сохранения и повторяется при нарушении уникальности.
+     */
+    public void add(Long userId, LocalDate monthStart, Collection<CardTotals> totals) {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            for (int attempt = 1; ; attempt++) {
+                Savepoint savepoint = con.setSavepoint();
+                try (PreparedStatement ps = con.prepareStatement(MERGE)) {
+                    for (CardTotals t : totals) {
+                        ps.setLong(1, userId);
+                        ps.setObject(2, monthStart);
+                        ps.setLong(3, t.cardId());
+                        ps.setLong(4, t.sentCount());
+                        ps.setLong(5, t.sentMinor());
+                        ps.setLong(6, t.receivedCount());
+                        ps.setLong(7, t.receivedMinor());
+                        ps.setLong(8, t.largestMinor());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    con.releaseSavepoint(savepoint);
+                    return null;
+                } catch (SQLException e) {
+                    con.rollback(savepoint);
+                    if (attempt >= MAX_ATTEMPTS || !isUniqueViolation(e)) {
+                        throw e;
+                    }
+                }
+            }
+        });
+    }
+
+    private static boolean isUniqueViolation(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (UNIQUE_VIOLATION.equals(next.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Движения по карте за месяц. */
+    public record CardTotals(Long cardId, long sentCount, long sentMinor, long receivedCount, long receivedMinor,
+                             long largestMinor) {}
+}
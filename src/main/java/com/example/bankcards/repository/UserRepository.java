@@ -2,10 +2,28 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    /** Пользователи, у которых есть отозванные токены или которые отключены. */
+    @Query("select u.id as id, u.tokenEpoch as tokenEpoch, u.enabled as enabled from User u where u.tokenEpoch > 0 or u.enabled = false")
+    List<TokenEpochView> findRevocationState();
+
+    @Modifying
+    @Query("update User u set u.tokenEpoch = u.tokenEpoch + 1 where u.id = :id")
+    int incrementTokenEpoch(@Param("id") Long id);
+
+    interface TokenEpochView {
+        Long getId();
+        int getTokenEpoch();
+        boolean isEnabled();
+    }
 }
@@ -0,0 +1,130 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BatchMode;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BatchTransferResult;
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.TransferBatchRepository;
+import com.example.bankcards.repository.TransferBatchRepository.LockedCard;
+import com.example.bankcards.repository.TransferBatchRepository.NewTransfer;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Пакетные переводы: все карты пакета блокируются одним запросом, переводы проверяются
+ * по очереди на текущих балансах в памяти, затем строки переводов, их проводки
+ * и месячные итоги карт записываются пакетами JDBC.
+ */
+@Service
+public class BatchTransferService {
+    private final TransferBatchRepository transferBatchRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final TransferSummaryService transferSummaryService;
+
+    public BatchTransferService(TransferBatchRepository transferBatchRepository, CurrentUserResolver currentUserResolver,
+                                TransferSummaryService transferSummaryService) {
+        this.transferBatchRepository = transferBatchRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.transferSummaryService = transferSummaryService;
+    }
+
+    /**
+     * Применяет пакет переводов текущего пользователя в одной транзакции.
+     * В режиме ALL_OR_NOTHING при любом отказе ничего не записывается.
+     */
+    @Transactional
+    public BatchTransferResponse createBatch(Authentication auth, BatchTransferRequest req) {
+        UserRef user = currentUserResolver.resolve(auth);
+        List<CreateTransferRequest> items = req.transfers();
+
+        TreeSet<Long> cardIds = new TreeSet<>();
+        for (CreateTransferRequest item : items) {
+            cardIds.add(item.fromCardId());
+            cardIds.add(item.toCardId());
+        }
+        Map<Long, LockedCard> cards = transferBatchRepository.lockCards(user.id(), cardIds);
+        Map<Long, Long> balances = new HashMap<>();
+        cards.values().forEach(c -> balances.put(c.id(), c.balanceMinor()));
+
+        String[] errors = new String[items.size()];
+        List<NewTransfer> accepted = new ArrayList<>();
+        int rejected = 0;
+        for (int i = 0; i < items.size(); i++) {
+            CreateTransferRequest item = items.get(i);
+            String error = check(item, cards, balances);
+            if (error != null) {
+                errors[i] = error;
+                rejected++;
+                continue;
+            }
+            long amount = item.amountMinor();
+            balances.merge(item.fromCardId(), -amount, Long::sum);
+            balances.merge(item.toCardId(), amount, Long::sum);
+            accepted.add(new NewTransfer(item.fromCardId(), item.toCardId(), amount));
+        }
+
+        if (rejected > 0 && req.mode() == BatchMode.ALL_OR_NOTHING) {
+            List<BatchTransferResult> results = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                results.add(errors[i] != null ? BatchTransferResult.rejected(i, errors[i]) : BatchTransferResult.skipped(i));
+            }
+            return new BatchTransferResponse(req.mode(), 0, rejected, results);
+        }
+
+        List<Long> ids = List.of();
+        if (!accepted.isEmpty()) {
+            OffsetDateTime createdAt = OffsetDateTime.now();
+            ids = transferBatchRepository.insertTransfers(user.id(), accepted, createdAt);
+            transferBatchRepository.insertLedgerEntries(ids, accepted);
+            transferSummaryService.record(user.id(), createdAt, accepted.stream()
+                    .map(t -> new TransferSummaryService.Movement(t.fromCardId(), t.toCardId(), t.amountMinor()))
+                    .toList());
+        }
+
+        List<BatchTransferResult> results = new ArrayList<>(items.size());
+        int next = 0;
+        for (int i = 0; i < items.size(); i++) {
+            results.add(errors[i] != null ? BatchTransferResult.rejected(i, errors[i]) : BatchTransferResult.created(i, ids.get(next++)));
+        }
+        return new BatchTransferResponse(req.mode(), accepted.size(), rejected, results);
+    }
+
+    /**
+     * Проверяет перевод на текущих (с учетом предыдущих элементов пакета) балансах.
+     *
+     * @return текст ошибки или null, если перевод можно применить
+     */
+    private static String check(CreateTransferRequest item, Map<Long, LockedCard> cards, Map<Long, Long> balances) {
+        if (item.fromCardId().equals(item.toCardId())) {
+            return "Cannot transfer to the same card";
+        }
+        if (item.amountMinor() <= 0) {
+            return "Amount must be positive";
+        }
+        LockedCard from = cards.get(item.fromCardId());
+        if (from == null) {
+            return "From card not found";
+        }
+        LockedCard to = cards.get(item.toCardId());
+        if (to == null) {
+            return "To card not found";
+        }
+        if (from.status() != CardStatus.ACTIVE || to.status() != CardStatus.ACTIVE) {
+            return "Both cards must be active";
+        }
+        if (balances.get(from.id()) < item.amountMinor()) {
+            return "Insufficient funds";
+        }
+        return null;
+    }
+}
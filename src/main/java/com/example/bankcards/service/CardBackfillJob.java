@@ -0,0 +1,93 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.BlindIndex;
+import com.example.bankcards.util.CardMasker;
+import com.example.bankcards.util.CryptoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Фоновое заполнение производных колонок карт (last4, HMAC номера), созданных до их появления.
+ * Обрабатывает по одной порции за запуск, каждую в своей транзакции; номер расшифровывается
+ * один раз на карту. Меняются только производные колонки, баланс и статус не трогаются.
+ */
+@Component
+public class CardBackfillJob {
+    private static final Logger log = LoggerFactory.getLogger(CardBackfillJob.class);
+
+    private final CardRepository cardRepository;
+    private final CryptoService cryptoService;
+    private final BlindIndex blindIndex;
+    private final CardNumberRegistry cardNumberRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+
+    private volatile long lastId = 0;
+    private volatile boolean done = false;
+
+    public CardBackfillJob(CardRepository cardRepository,
+                           CryptoService cryptoService,
+                           BlindIndex blindIndex,
+                           CardNumberRegistry cardNumberRegistry,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.card-backfill.enabled:true}") boolean enabled,
+                           @Value("${app.card-backfill.chunk-size:500}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.cryptoService = cryptoService;
+        this.blindIndex = blindIndex;
+        this.cardNumberRegistry = cardNumberRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(initialDelayString = "${app.card-backfill.interval-ms:1000}", fixedDelayString = "${app.card-backfill.interval-ms:1000}")
+    public void run() {
+        if (!enabled || done) {
+            return;
+        }
+        Integer processed = transactionTemplate.execute(status -> backfillChunk());
+        if (processed == null || processed == 0) {
+            done = true;
+            log.info("Card backfill finished");
+        }
+    }
+
+    /**
+     * Заполняет last4 и HMAC номера для следующей порции карт.
+     * Позиция сдвигается только после всей порции, чтобы порция с ошибкой повторилась.
+     *
+     * @return сколько карт было в порции
+     */
+    int backfillChunk() {
+        List<CardRepository.EncryptedNumberView> chunk = cardRepository.findIncomplete(lastId, Limit.of(chunkSize));
+        for (CardRepository.EncryptedNumberView card : chunk) {
+            String number = cryptoService.decrypt(card.getCardNumberCiphertext());
+            if (card.getCardLast4() == null) {
+                cardRepository.setLast4(card.getId(), CardMasker.last4(number));
+            }
+            if (card.getCardNumberHmac() == null) {
+                byte[] hmac = blindIndex.of(number);
+                if (cardRepository.setNumberHmac(card.getId(), hmac) == 0) {
+                    log.warn("Card {} has the same number as an already indexed card; left without blind index", card.getId());
+                } else {
+                    cardNumberRegistry.add(hmac);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+        return chunk.size();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Фильтр Блума по слепым индексам номеров всех карт.
+ * Позволяет не ходить в БД при проверке дубликата в обычном случае, когда номера еще нет.
+ * Фильтр знает только карты этого экземпляра и загруженные при старте; от дубликатов,
+ * созданных другими экземплярами, защищает уникальный индекс uq_cards_number_hmac.
+ */
+@Component
+public class CardNumberRegistry {
+    private static final Logger log = LoggerFactory.getLogger(CardNumberRegistry.class);
+    private static final String LOAD_CHUNK =
+            "select id, card_number_hmac from cards where id > ? and card_number_hmac is not null order by id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BloomFilter filter;
+    private final int loadChunkSize;
+    private volatile boolean loaded = false;
+
+    public CardNumberRegistry(JdbcTemplate jdbcTemplate,
+                              @Value("${app.card-index.expected-cards:1000000}") long expectedCards,
+                              @Value("${app.card-index.false-positive-rate:0.01}") double falsePositiveRate,
+                              @Value("${app.card-index.load-chunk-size:10000}") int loadChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.filter = new BloomFilter(expectedCards, falsePositiveRate);
+        this.loadChunkSize = loadChunkSize;
+    }
+
+    /**
+     * Загружает индексы существующих карт порциями по id, не держа длинную транзакцию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long[] lastId = {0};
+        int[] read = {0};
+        long total = 0;
+        do {
+            read[0] = 0;
+            jdbcTemplate.query(LOAD_CHUNK, (RowCallbackHandler) rs -> {
+                lastId[0] = rs.getLong(1);
+                filter.put(rs.getBytes(2));
+                read[0]++;
+            }, lastId[0], loadChunkSize);
+            total += read[0];
+        } while (read[0] == loadChunkSize);
+        loaded = true;
+        log.info("Loaded {} card number indexes into Bloom filter", total);
+    }
+
+    /**
+     * @return false, если карты с таким номером точно нет; true — если, возможно, есть
+     *         (в том числе пока фильтр не загружен)
+     */
+    public boolean mightExist(byte[] numberHmac) {
+        return !loaded || filter.mightContain(numberHmac);
+    }
+
+    public void add(byte[] numberHmac) {
+        filter.put(numberHmac);
+    }
+}
@@ -1,101 +1,271 @@
 package com.example.bankcards.service;
 
 
+import com.example.bankcards.dto.CardBalanceResponse;
 import com.example.bankcards.dto.CreateCardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CountMode;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.ETagged;
+import com.example.bankcards.dto.SlicePage;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
-import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.exception.ConflictException;
 import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.exception.PreconditionFailedException;
+import com.example.bankcards.repository.CardCountEstimator;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardVersionView;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndex;
+import com.example.bankcards.util.CardMasker;
 import com.example.bankcards.util.CryptoService;
-import jakarta.transaction.Transactional;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.ETags;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Управления картами: список, создание, проверки доступа, смена статуса, удаление.
  */
 @Service
 public class CardService {
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CryptoService cryptoService;
+    private final CurrentUserResolver currentUserResolver;
+    private final CardCountEstimator cardCountEstimator;
+    private final BlindIndex blindIndex;
+    private final CardNumberRegistry cardNumberRegistry;
+    private final LedgerService ledgerService;
 
-    public CardService(CardRepository cardRepository, UserRepository userRepository, CryptoService cryptoService) {
+    public CardService(CardRepository cardRepository, UserRepository userRepository, CryptoService cryptoService,
+                       CurrentUserResolver currentUserResolver, CardCountEstimator cardCountEstimator,
+                       BlindIndex blindIndex, CardNumberRegistry cardNumberRegistry, LedgerService ledgerService) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
         this.cryptoService = cryptoService;
+        this.currentUserResolver = currentUserResolver;
+        this.cardCountEstimator = cardCountEstimator;
+        this.blindIndex = blindIndex;
+        this.cardNumberRegistry = cardNumberRegistry;
+        this.ledgerService = ledgerService;
     }
 
     /**
-     * Возвращает пользователю список карт.
+     * Возвращает пользователю список карт с ETag страницы.
      * Админу все карты, пользователю только свои.
      */
-    public Page<CardResponse> listCards(Authentication auth, CardStatus status, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public ETagged<Page<CardResponse>> listCards(Authentication auth, CardStatus status, Pageable pageable) {
         boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
         if (isAdmin) {
             Page<Card> page = status == null ? cardRepository.findAll(pageable) : cardRepository.findByStatus(status, pageable);
-            return page.map(card -> CardResponse.from(card, decrypt(card)));
+            return toResponses(page);
         }
-        User user = currentUser(auth);
-        Page<Card> page = status == null ? cardRepository.findByUser(user, pageable) : cardRepository.findByUserAndStatus(user, status, pageable);
-        return page.map(card -> CardResponse.from(card, decrypt(card)));
+        UserRef user = currentUserResolver.resolve(auth);
+        Page<Card> page = status == null ? cardRepository.findByUserId(user.id(), pageable) : cardRepository.findByUserIdAndStatus(user.id(), status, pageable);
+        return toResponses(page);
+    }
+
+    /**
+     * Текущий ETag той же страницы, что вернул бы listCards, по версиям и балансам без загрузки карт.
+     */
+    @Transactional(readOnly = true)
+    public String listCardsETag(Authentication auth, CardStatus status, Pageable pageable) {
+        boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
+        Page<CardVersionView> page;
+        if (isAdmin) {
+            page = status == null ? cardRepository.findVersionsBy(pageable) : cardRepository.findVersionsByStatus(status, pageable);
+        } else {
+            UserRef user = currentUserResolver.resolve(auth);
+            page = status == null
+                    ? cardRepository.findVersionsByUserId(user.id(), pageable)
+                    : cardRepository.findVersionsByUserIdAndStatus(user.id(), status, pageable);
+        }
+        List<String> entries = page.getContent().stream()
+                .map(v -> ETags.entry(v.getId(), v.getVersion(), v.getBalanceMinor()))
+                .toList();
+        return ETags.page(page.getTotalElements(), entries);
+    }
+
+    /**
+     * Возвращает страницу карт без точного COUNT(*): только признак следующей страницы
+     * и, в режиме APPROXIMATE, оценку общего количества по статистике планировщика.
+     * Админу все карты, пользователю только свои.
+     */
+    @Transactional(readOnly = true)
+    public SlicePage<CardResponse> listCardsSlice(Authentication auth, CardStatus status, CountMode count, Pageable pageable) {
+        boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
+        Long userId = isAdmin ? null : currentUserResolver.resolve(auth).id();
+        Slice<Card> slice;
+        if (userId == null) {
+            slice = status == null ? cardRepository.findSliceBy(pageable) : cardRepository.findSliceByStatus(status, pageable);
+        } else {
+            slice = status == null ? cardRepository.findSliceByUserId(userId, pageable) : cardRepository.findSliceByUserIdAndStatus(userId, status, pageable);
+        }
+        Long approximateTotal = count == CountMode.APPROXIMATE ? cardCountEstimator.estimate(userId, status) : null;
+        List<CardResponse> content = slice.getContent().stream().map(responder(slice.getContent())).toList();
+        return new SlicePage<>(content, slice.getNumber(), slice.getSize(), slice.hasNext(), approximateTotal);
+    }
+
+    /**
+     * Возвращает keyset-страницу карт (по возрастанию id) без подсчета общего количества.
+     * Админу все карты, пользователю только свои.
+     *
+     * @param after курсор из предыдущей страницы или null для первой
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CardResponse> listCardsAfter(Authentication auth, CardStatus status, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        long afterId = after == null ? 0 : CursorCodec.decode(after, 1)[0];
+        Limit fetch = Limit.of(limit + 1);
+        boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
+        List<Card> cards;
+        if (isAdmin) {
+            cards = status == null ? cardRepository.findAllAfter(afterId, fetch) : cardRepository.findByStatusAfter(status, afterId, fetch);
+        } else {
+            UserRef user = currentUserResolver.resolve(auth);
+            cards = status == null
+                    ? cardRepository.findByUserIdAfter(user.id(), afterId, fetch)
+                    : cardRepository.findByUserIdAndStatusAfter(user.id(), status, afterId, fetch);
+        }
+        boolean hasNext = cards.size() > limit;
+        List<Card> items = hasNext ? cards.subList(0, limit) : cards;
+        String nextCursor = hasNext ? CursorCodec.encode(items.get(items.size() - 1).getId()) : null;
+        return new CursorPage<>(items.stream().map(responder(items)).toList(), nextCursor);
     }
 
     /**
      * Создает новую карту для текущего пользователя; номер шифруется, ответ маскируется.
+     * Дубликат номера отклоняется: запрос в БД нужен, только если фильтр Блума допускает совпадение,
+     * остальное ловит уникальный индекс по HMAC номера.
      */
     @Transactional
     public CardResponse createCard(Authentication auth, CreateCardRequest request) {
         boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
-        User user = currentUser(auth);
-        String[] enc = cryptoService.encrypt(request.cardNumber());
+        UserRef user = currentUserResolver.resolve(auth);
+        byte[] numberHmac = blindIndex.of(request.cardNumber());
+        if (cardNumberRegistry.mightExist(numberHmac) && cardRepository.existsByCardNumberHmac(numberHmac)) {
+            throw new ConflictException("Card already exists");
+        }
         Card card = Card.builder()
-                .user(user)
-                .cardNumberEncrypted(enc[0])
-                .cardNumberIv(enc[1])
+                .user(userRepository.getReferenceById(user.id()))
+                .cardNumberCiphertext(cryptoService.encrypt(request.cardNumber()))
+                .cardLast4(CardMasker.last4(request.cardNumber()))
+                .cardNumberHmac(numberHmac)
                 .ownerName(request.ownerName())
                 .expiration(request.expiration())
                 .status(isAdmin ? CardStatus.ACTIVE : CardStatus.ACTIVE)
                 .balanceMinor(0L)
                 .build();
-        card = cardRepository.save(card);
-        return CardResponse.from(card, request.cardNumber());
+        try {
+            card = cardRepository.saveAndFlush(card);
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException("Card already exists");
+        }
+        cardNumberRegistry.add(numberHmac);
+        return CardResponse.from(card, request.cardNumber(), card.getBalanceMinor());
     }
 
     /**
-     * Возвращает карту, если у пользователя есть доступ.
+     * Находит карту по полному номеру через слепой индекс, без расшифровки. Только для админа.
      */
-    public CardResponse get(Authentication auth, Long id) {
+    @Transactional(readOnly = true)
+    public CardResponse findByNumber(Authentication auth, String cardNumber) {
+        boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
+        if (!isAdmin) {
+            throw new BadRequestException("Only admin can look up card by number");
+        }
+        Card card = cardRepository.findByCardNumberHmac(blindIndex.of(cardNumber))
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+        return toResponse(card);
+    }
+
+    /**
+     * Возвращает карту с ETag, если у пользователя есть доступ.
+     */
+    @Transactional(readOnly = true)
+    public ETagged<CardResponse> get(Authentication auth, Long id) {
+        Card card = cardRepository.findById(id).orElseThrow(() -> new NotFoundException("Card not found"));
+        ensureAccess(auth, card.getUser().getId());
+        return tagged(card);
+    }
+
+    /**
+     * Текущий ETag карты одним запросом версии и баланса, без загрузки и расшифровки, если у пользователя есть доступ.
+     */
+    @Transactional(readOnly = true)
+    public String eTag(Authentication auth, Long id) {
+        CardVersionView card = cardRepository.findVersionById(id).orElseThrow(() -> new NotFoundException("Card not found"));
+        ensureAccess(auth, card.getUserId());
+        return ETags.card(card.getVersion(), card.getBalanceMinor());
+    }
+
+    /**
+     * Баланс карты на момент at (по умолчанию — текущий), если у пользователя есть доступ.
+     */
+    @Transactional(readOnly = true)
+    public CardBalanceResponse balanceAt(Authentication auth, Long id, OffsetDateTime at) {
         Card card = cardRepository.findById(id).orElseThrow(() -> new NotFoundException("Card not found"));
-        ensureAccess(auth, card);
-        return CardResponse.from(card, decrypt(card));
+        ensureAccess(auth, card.getUser().getId());
+        OffsetDateTime moment = at != null ? at : OffsetDateTime.now();
+        return new CardBalanceResponse(card.getId(), moment, ledgerService.balanceAt(card, moment));
     }
 
     /**
      * Меняет статус карты. 
      * Пользователь может запросить BLOCKED; 
      * Админ — любой статус.
+     * Без блокировок: UPDATE проверяет версию строки. С ifMatch статус меняется, только если версия
+     * из тега совпадает с текущей, иначе 412; без него параллельное изменение карты дает 409.
+     *
+     * @param ifMatch значение If-Match или null
      */
     @Transactional
-    public CardResponse changeStatus(Authentication auth, Long id, CardStatus status) {
+    public ETagged<CardResponse> changeStatus(Authentication auth, Long id, CardStatus status, String ifMatch) {
         Card card = cardRepository.findById(id).orElseThrow(() -> new NotFoundException("Card not found"));
         boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
         if (!isAdmin) {
-            ensureAccess(auth, card);
+            ensureAccess(auth, card.getUser().getId());
             if (status != CardStatus.BLOCKED) {
                 throw new BadRequestException("Only block request allowed for user");
             }
         }
+        if (ifMatch != null && !ETags.matchesVersion(ifMatch, card.getVersion())) {
+            throw new PreconditionFailedException("Card has been modified");
+        }
         card.setStatus(status);
-        Card saved = cardRepository.save(card);
-        return CardResponse.from(saved, decrypt(saved));
+        Card saved;
+        try {
+            saved = cardRepository.saveAndFlush(card);
+        } catch (OptimisticLockingFailureException e) {
+            if (ifMatch != null) {
+                throw new PreconditionFailedException("Card has been modified");
+            }
+            throw new ConflictException("Card was modified concurrently");
+        }
+        return tagged(saved);
     }
 
     /**
@@ -114,27 +284,66 @@ public class CardService {
     /**
      * Карта владельца или роль админа.
      */
-    private void ensureAccess(Authentication auth, Card card) {
+    private void ensureAccess(Authentication auth, Long ownerId) {
         boolean isAdmin = auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).anyMatch(a -> a.equals("ROLE_ADMIN"));
         if (isAdmin) return;
-        User user = currentUser(auth);
-        if (!card.getUser().getId().equals(user.getId())) {
+        UserRef user = currentUserResolver.resolve(auth);
+        if (!ownerId.equals(user.id())) {
             throw new NotFoundException("Card not found");
         }
     }
 
     /**
-     * Возвращает текущего пользователя.
+     * Строит ответ по сохраненным последним 4 цифрам.
+     * Расшифровка нужна только для карт, которые еще не обработал CardBackfillJob.
+     */
+    private CardResponse toResponse(Card card) {
+        return responder(List.of(card)).apply(card);
+    }
+
+    /**
+     * Ответ с ETag по версии карты и балансу из ответа.
      */
-    private User currentUser(Authentication auth) {
-        String email = auth.getName();
-        return userRepository.findByEmail(email).orElseThrow(() -> new NotFoundException("User not found"));
+    private ETagged<CardResponse> tagged(Card card) {
+        CardResponse response = toResponse(card);
+        return new ETagged<>(response, ETags.card(card.getVersion(), response.balanceMinor()));
     }
 
     /**
-     * Расшифровывает и возвращает исходный номер карты.
+     * Строит ответы для страницы; карты без last4 расшифровываются одним пакетом.
+     * ETag считается так же, как в listCardsETag.
      */
-    private String decrypt(Card card) {
-        return cryptoService.decrypt(card.getCardNumberEncrypted(), card.getCardNumberIv());
+    private ETagged<Page<CardResponse>> toResponses(Page<Card> page) {
+        Page<CardResponse> responses = page.map(responder(page.getContent()));
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < page.getNumberOfElements(); i++) {
+            Card card = page.getContent().get(i);
+            entries.add(ETags.entry(card.getId(), card.getVersion(), responses.getContent().get(i).balanceMinor()));
+        }
+        return new ETagged<>(responses, ETags.page(page.getTotalElements(), entries));
+    }
+
+    /**
+     * Возвращает маппер для набора карт. Проводки после снимков балансов суммируются одним запросом,
+     * номера карт без last4 расшифровываются заранее одним пакетом.
+     */
+    private Function<Card, CardResponse> responder(List<Card> cards) {
+        Map<Long, Long> amounts = ledgerService.amountsSinceSnapshot(cards);
+        List<Card> withoutLast4 = cards.stream()
+                .filter(card -> card.getCardLast4() == null)
+                .toList();
+        Map<Long, String> numbersById = new HashMap<>();
+        if (!withoutLast4.isEmpty()) {
+            List<String> numbers = cryptoService.decryptAll(withoutLast4);
+            for (int i = 0; i < withoutLast4.size(); i++) {
+                numbersById.put(withoutLast4.get(i).getId(), numbers.get(i));
+            }
+        }
+        return card -> {
+            long balance = card.getBalanceMinor() + amounts.getOrDefault(card.getId(), 0L);
+            return card.getCardLast4() != null
+                    ? CardResponse.from(card, balance)
+                    : CardResponse.from(card, numbersById.get(card.getId()), balance);
+        };
     }
 }
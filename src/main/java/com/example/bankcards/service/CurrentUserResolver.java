@@ -0,0 +1,137 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.BankUserDetails;
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.config.JwtPrincipal;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.UserChangedEvent;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.observation.Observation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Определяет текущего пользователя по Authentication.
+ * Если id уже есть в принципале (JWT-клеймы или BankUserDetails), база не используется;
+ * иначе результат кэшируется на время запроса и в общем кэше по email.
+ * Каждое определение считается таймером bank.user.lookup с тегом source (principal, request, cache, database):
+ * число определений на запрос — его count, деленный на http.server.requests того же endpoint.
+ * Попадания и промахи общего кэша экспортируются метриками cache.* с тегом cache=users.by-email.
+ */
+@Component
+public class CurrentUserResolver {
+    private static final String REQUEST_ATTRIBUTE = CurrentUserResolver.class.getName() + ".user";
+    private static final String LOOKUP = "bank.user.lookup";
+    private static final String SOURCE = "source";
+    private static final String CACHE_NAME = "users.by-email";
+
+    private final UserRepository userRepository;
+    private final Cache<String, UserRef> usersByEmail;
+    private final EndpointObservations observations;
+
+    public CurrentUserResolver(UserRepository userRepository,
+                               @Value("${app.user-cache.max-size:10000}") long maxSize,
+                               @Value("${app.user-cache.ttl:PT10M}") Duration ttl,
+                               EndpointObservations observations,
+                               MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.observations = observations;
+        this.usersByEmail = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .<String, UserRef>build(), CACHE_NAME);
+    }
+
+    /**
+     * Возвращает текущего пользователя.
+     *
+     * @throws NotFoundException если пользователь не найден
+     */
+    public UserRef resolve(Authentication auth) {
+        Object principal = auth.getPrincipal();
+        if (principal instanceof JwtPrincipal jwt) {
+            return observations.observe(LOOKUP, SOURCE, "principal", () -> new UserRef(jwt.userId(), jwt.email(), authorities(auth)));
+        }
+        if (principal instanceof BankUserDetails details) {
+            return observations.observe(LOOKUP, SOURCE, "principal",
+                    () -> new UserRef(details.getId(), details.getUsername(), authorities(auth)));
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof UserRef memo
+                && memo.email().equals(auth.getName())) {
+            return observations.observe(LOOKUP, SOURCE, "request", () -> memo);
+        }
+        Observation observation = observations.start(LOOKUP);
+        boolean[] loaded = new boolean[1];
+        UserRef user;
+        try {
+            user = usersByEmail.get(auth.getName(), email -> {
+                loaded[0] = true;
+                return load(email);
+            });
+        } finally {
+            observation.lowCardinalityKeyValue(SOURCE, loaded[0] ? "database" : "cache").stop();
+        }
+        if (user == null) {
+            throw new NotFoundException("User not found");
+        }
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    /**
+     * Сбрасывает закэшированного пользователя.
+     */
+    public void evict(String email) {
+        usersByEmail.invalidate(email);
+    }
+
+    /**
+     * Сбрасывает пользователя после коммита: до коммита другой запрос мог бы снова закэшировать старую строку.
+     * Событие, опубликованное вне транзакции, обрабатывается сразу.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.email() != null) {
+            evict(event.email());
+        }
+        usersByEmail.asMap().values().removeIf(user -> user.id().equals(event.userId()));
+    }
+
+    private UserRef load(String email) {
+        return userRepository.findByEmail(email)
+                .map(CurrentUserResolver::toRef)
+                .orElse(null);
+    }
+
+    private static UserRef toRef(User user) {
+        Set<String> roles = user.getRoles().stream()
+                .map(role -> "ROLE_" + role.getName())
+                .collect(Collectors.toSet());
+        return new UserRef(user.getId(), user.getEmail(), roles);
+    }
+
+    private static Set<String> authorities(Authentication auth) {
+        return auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+    }
+}
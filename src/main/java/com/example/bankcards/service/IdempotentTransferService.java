@@ -0,0 +1,199 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.dto.TransferResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.exception.ConflictException;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.exception.UnprocessableEntityException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Создание перевода с заголовком Idempotency-Key.
+ * Повтор с тем же ключом возвращает исходный перевод: сначала из индекса недавних ключей в памяти,
+ * затем из таблицы idempotency_keys. Одновременный дубликат ждет результата первого запроса.
+ * Ключ записывается в той же транзакции, что и перевод; уникальный индекс (user_id, idem_key)
+ * гарантирует единственный перевод и при нескольких экземплярах приложения.
+ */
+@Service
+public class IdempotentTransferService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotentTransferService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final TransferService transferService;
+    private final TransferRepository transferRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Key, Completed> recent;
+    private final ConcurrentMap<Key, CompletableFuture<Completed>> inFlight = new ConcurrentHashMap<>();
+    private final Duration waitTimeout;
+    private final Duration retention;
+
+    public IdempotentTransferService(TransferService transferService,
+                                     TransferRepository transferRepository,
+                                     IdempotencyKeyRepository idempotencyKeyRepository,
+                                     CurrentUserResolver currentUserResolver,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.idempotency.recent-size:10000}") long recentSize,
+                                     @Value("${app.idempotency.recent-ttl:PT10M}") Duration recentTtl,
+                                     @Value("${app.idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+                                     @Value("${app.idempotency.retention:P1D}") Duration retention) {
+        this.transferService = transferService;
+        this.transferRepository = transferRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(recentSize)
+                .expireAfterWrite(recentTtl)
+                .build();
+        this.waitTimeout = waitTimeout;
+        this.retention = retention;
+    }
+
+    /**
+     * Создает перевод не более одного раза для пары (пользователь, ключ).
+     *
+     * @throws UnprocessableEntityException если ключ уже использован с другими параметрами
+     * @throws ConflictException            если первый запрос с этим ключом не завершился за время ожидания
+     */
+    public TransferResponse create(Authentication auth, String idempotencyKey, CreateTransferRequest req) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        UserRef user = currentUserResolver.resolve(auth);
+        Key key = new Key(user.id(), idempotencyKey);
+        String requestHash = fingerprint(req);
+
+        Completed done = recent.getIfPresent(key);
+        if (done != null) {
+            return replay(done, requestHash);
+        }
+
+        CompletableFuture<Completed> mine = new CompletableFuture<>();
+        CompletableFuture<Completed> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return replay(await(existing), requestHash);
+        }
+        try {
+            Completed result = execute(auth, key, requestHash, req);
+            recent.put(key, result);
+            mine.complete(result);
+            return replay(result, requestHash);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Удаляет ключи старше срока хранения.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int removed = transactionTemplate.execute(status ->
+                idempotencyKeyRepository.deleteCreatedBefore(OffsetDateTime.now().minus(retention)));
+        if (removed > 0) {
+            log.info("Purged {} expired idempotency keys", removed);
+        }
+    }
+
+    private Completed execute(Authentication auth, Key key, String requestHash, CreateTransferRequest req) {
+        Completed stored = findStored(key);
+        if (stored != null) {
+            return stored;
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                TransferResponse transfer = transferService.create(auth, req);
+                idempotencyKeyRepository.saveAndFlush(IdempotencyKey.builder()
+                        .userId(key.userId())
+                        .key(key.value())
+                        .requestHash(requestHash)
+                        .transferId(transfer.id())
+                        .build());
+                return new Completed(requestHash, transfer);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // тот же ключ параллельно записал другой экземпляр; его перевод уже зафиксирован
+            stored = findStored(key);
+            if (stored == null) {
+                throw e;
+            }
+            return stored;
+        }
+    }
+
+    private Completed findStored(Key key) {
+        return idempotencyKeyRepository.findByUserIdAndKey(key.userId(), key.value())
+                .map(k -> new Completed(k.getRequestHash(), transferRepository.findResponseById(k.getTransferId())
+                        .orElseThrow(() -> new NotFoundException("Transfer not found"))))
+                .orElse(null);
+    }
+
+    private Completed await(CompletableFuture<Completed> future) {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        }
+    }
+
+    private static TransferResponse replay(Completed done, String requestHash) {
+        if (!done.requestHash().equals(requestHash)) {
+            throw new UnprocessableEntityException("Idempotency-Key was already used with a different request");
+        }
+        return done.transfer();
+    }
+
+    private static String fingerprint(CreateTransferRequest req) {
+        String canonical = req.fromCardId() + ":" + req.toCardId() + ":" + req.amountMinor();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Key(Long userId, String value) {}
+
+    private record Completed(String requestHash, TransferResponse transfer) {}
+}
@@ -0,0 +1,88 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BalanceSnapshot;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.BalanceSnapshotRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Журнал проводок и балансы карт. Баланс — снимок в строке карты плюс проводки после balanceAsOf;
+ * снимки сдвигает {@link LedgerSnapshotJob}, их история лежит в balance_snapshots.
+ */
+@Service
+public class LedgerService {
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+
+    public LedgerService(LedgerEntryRepository ledgerEntryRepository, BalanceSnapshotRepository balanceSnapshotRepository) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+    }
+
+    /**
+     * Записывает списание и зачисление перевода. Карты перевода должны быть заблокированы вызывающим,
+     * иначе LedgerSnapshotJob может сдвинуть снимок мимо еще не зафиксированных проводок.
+     */
+    public void record(Transfer transfer) {
+        ledgerEntryRepository.saveAll(List.of(
+                LedgerEntry.builder()
+                        .card(transfer.getFromCard())
+                        .transfer(transfer)
+                        .amountMinor(-transfer.getAmountMinor())
+                        .build(),
+                LedgerEntry.builder()
+                        .card(transfer.getToCard())
+                        .transfer(transfer)
+                        .amountMinor(transfer.getAmountMinor())
+                        .build()
+        ));
+    }
+
+    /**
+     * Текущий баланс карты. Для проверки списания карта должна быть заблокирована до вызова:
+     * запрос суммы тогда видит все зафиксированные проводки.
+     */
+    public long balance(Card card) {
+        return card.getBalanceMinor() + ledgerEntryRepository.sumAfter(card.getId(), card.getBalanceAsOf());
+    }
+
+    /**
+     * Суммы проводок после снимка для набора карт одним запросом; карт без таких проводок в ответе нет.
+     * Текущий баланс карты — balanceMinor плюс сумма.
+     */
+    public Map<Long, Long> amountsSinceSnapshot(List<Card> cards) {
+        if (cards.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Long> amounts = new HashMap<>();
+        for (LedgerEntryRepository.CardAmount amount : ledgerEntryRepository.sumAfterSnapshot(cards.stream().map(Card::getId).toList())) {
+            amounts.put(amount.getCardId(), amount.getAmountMinor());
+        }
+        return amounts;
+    }
+
+    /**
+     * Баланс карты на момент at: ближайший снимок не позже at плюс проводки между ними.
+     * Для моментов после текущего снимка это снимок в строке карты, иначе — снимок из истории.
+     */
+    public long balanceAt(Card card, OffsetDateTime at) {
+        if (!at.isBefore(card.getBalanceAsOf())) {
+            return card.getBalanceMinor() + ledgerEntryRepository.sumBetween(card.getId(), card.getBalanceAsOf(), at);
+        }
+        List<BalanceSnapshot> snapshots = balanceSnapshotRepository.findLatest(card.getId(), at, Limit.of(1));
+        if (snapshots.isEmpty()) {
+            return 0L;
+        }
+        BalanceSnapshot snapshot = snapshots.get(0);
+        return snapshot.getBalanceMinor() + ledgerEntryRepository.sumBetween(card.getId(), snapshot.getAsOf(), at);
+    }
+}
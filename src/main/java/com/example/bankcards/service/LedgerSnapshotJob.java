@@ -0,0 +1,115 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.BalanceSnapshotRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Периодически переносит проводки журнала в снимки балансов карт, чтобы чтение баланса суммировало
+ * только недавние проводки. Снимок сдвигается до момента now - app.ledger.snapshot-lag (запас на
+ * расхождение часов экземпляров) и сохраняется в историю balance_snapshots.
+ * Обрабатываются карты с проводками после прошлого запуска, порциями в отдельных транзакциях.
+ * Если порция не прошла, ее карты сдвинутся при следующих проводках; баланс от этого не меняется,
+ * растет только число суммируемых проводок.
+ */
+@Component
+public class LedgerSnapshotJob {
+    private static final Logger log = LoggerFactory.getLogger(LedgerSnapshotJob.class);
+
+    private final CardRepository cardRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Duration lag;
+
+    /** Граница прошлого полного запуска; до первого запуска — самый поздний снимок в базе. */
+    private volatile OffsetDateTime watermark;
+
+    public LedgerSnapshotJob(CardRepository cardRepository,
+                             LedgerEntryRepository ledgerEntryRepository,
+                             BalanceSnapshotRepository balanceSnapshotRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.ledger.snapshot-enabled:true}") boolean enabled,
+                             @Value("${app.ledger.snapshot-chunk-size:500}") int chunkSize,
+                             @Value("${app.ledger.snapshot-lag:PT1M}") Duration lag) {
+        this.cardRepository = cardRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.lag = lag;
+    }
+
+    @Scheduled(initialDelayString = "${app.ledger.snapshot-interval-ms:60000}", fixedDelayString = "${app.ledger.snapshot-interval-ms:60000}")
+    public void run() {
+        if (enabled) {
+            snapshot(OffsetDateTime.now().minus(lag));
+        }
+    }
+
+    /**
+     * Сдвигает снимки всех карт с проводками после прошлого запуска до момента until,
+     * усеченного до микросекунд (точность колонок времени).
+     *
+     * @return сколько карт получили новый снимок
+     */
+    int snapshot(OffsetDateTime moment) {
+        OffsetDateTime until = moment.truncatedTo(ChronoUnit.MICROS);
+        OffsetDateTime after = watermark != null ? watermark : initialWatermark();
+        if (!until.isAfter(after)) {
+            return 0;
+        }
+        int rolled = 0;
+        long afterId = 0;
+        List<Long> cardIds;
+        do {
+            cardIds = ledgerEntryRepository.findCardIdsWithEntries(after, until, afterId, Limit.of(chunkSize));
+            if (cardIds.isEmpty()) {
+                break;
+            }
+            List<Long> chunk = cardIds;
+            Integer count = transactionTemplate.execute(status -> rollChunk(chunk, until));
+            rolled += count == null ? 0 : count;
+            afterId = cardIds.get(cardIds.size() - 1);
+        } while (cardIds.size() == chunkSize);
+        watermark = until;
+        if (rolled > 0) {
+            log.debug("Balance snapshots moved to {} for {} cards", until, rolled);
+        }
+        return rolled;
+    }
+
+    /**
+     * Блокирует карты порции (ждет переводы, которые уже пишут по ним проводки), сохраняет начальные
+     * балансы еще не сдвигавшихся карт, сдвигает снимки и сохраняет новые в историю.
+     */
+    private int rollChunk(List<Long> cardIds, OffsetDateTime until) {
+        cardRepository.lockAll(cardIds);
+        balanceSnapshotRepository.copyFromCards(cardIds, Card.BALANCE_ORIGIN);
+        int rolled = cardRepository.rollBalances(cardIds, until);
+        balanceSnapshotRepository.copyFromCards(cardIds, until);
+        return rolled;
+    }
+
+    private OffsetDateTime initialWatermark() {
+        OffsetDateTime latest = cardRepository.findLatestBalanceAsOf();
+        return latest != null ? latest : Card.BALANCE_ORIGIN;
+    }
+}
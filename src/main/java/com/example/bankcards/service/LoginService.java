@@ -0,0 +1,163 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.BankUserDetails;
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.config.JwtClaims;
+import com.example.bankcards.config.JwtService;
+import com.example.bankcards.config.SqlStatementCounter;
+import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.dto.LoginResponse;
+import com.example.bankcards.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Вход по email и паролю. Проверка BCrypt намеренно дорогая, поэтому выполняется на отдельном пуле
+ * из app.login.threads потоков (0 = число ядер) с очередью на app.login.queue-capacity запросов:
+ * поток Tomcat на время проверки освобождается, а при полной очереди запрос сразу получает 429 с Retry-After
+ * и не занимает ядра, нужные остальным эндпоинтам.
+ * Ожидание в очереди пишется в bank.login.wait (теги queue — заполненность очереди при постановке, outcome),
+ * сама проверка — в bank.login с тегом outcome. Текущая длина очереди — gauge bank.login.queue,
+ * ответы 429 из-за полной очереди — счетчик bank.login.rejected. SQL-операторы проверки идут в подсчет запроса ({@link SqlStatementCounter}).
+ * Пул не объявлен бином Executor, чтобы не отключать applicationTaskExecutor Spring Boot (потоковый экспорт).
+ */
+@Service
+public class LoginService {
+    static final String OUTCOME = "outcome";
+
+    private final AuthenticationManager authenticationManager;
+    private final JwtService jwtService;
+    private final EndpointObservations observations;
+    private final SqlStatementCounter sqlStatementCounter;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final int queueCapacity;
+    private final Duration retryAfter;
+
+    public LoginService(AuthenticationManager authenticationManager,
+                        JwtService jwtService,
+                        EndpointObservations observations,
+                        SqlStatementCounter sqlStatementCounter,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.login.threads:0}") int threads,
+                        @Value("${app.login.queue-capacity:64}") int queueCapacity,
+                        @Value("${app.login.retry-after:PT1S}") Duration retryAfter) {
+        this.authenticationManager = authenticationManager;
+        this.jwtService = jwtService;
+        this.observations = observations;
+        this.sqlStatementCounter = sqlStatementCounter;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "login-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+        Gauge.builder("bank.login.queue", executor, e -> e.getQueue().size())
+                .description("Login requests waiting for a password check")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bank.login.rejected")
+                .description("Login requests rejected with 429 because the queue was full")
+                .register(meterRegistry);
+        this.queueCapacity = queueCapacity;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Ставит проверку пароля в очередь пула; результат — JWT или AuthenticationException.
+     *
+     * @throws TooManyRequestsException если очередь заполнена
+     */
+    public CompletableFuture<LoginResponse> login(LoginRequest request) {
+        Observation wait = observations.start("bank.login.wait")
+                .lowCardinalityKeyValue("queue", queueBucket(executor.getQueue().size(), queueCapacity));
+        Observation verify = observations.create("bank.login");
+        SqlStatementCounter.Statements statements = sqlStatementCounter.current();
+        try {
+            return CompletableFuture.supplyAsync(() -> sqlStatementCounter.within(statements, () -> {
+                wait.lowCardinalityKeyValue(OUTCOME, "started").stop();
+                return authenticate(request, verify);
+            }), executor);
+        } catch (RejectedExecutionException e) {
+            wait.lowCardinalityKeyValue(OUTCOME, "rejected").stop();
+            rejected.increment();
+            throw new TooManyRequestsException("Too many login attempts, retry later", retryAfter);
+        }
+    }
+
+    private LoginResponse authenticate(LoginRequest request, Observation verify) {
+        verify.start();
+        try {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.email(), request.password())
+            );
+            verify.lowCardinalityKeyValue(OUTCOME, "success");
+            return new LoginResponse(token((UserDetails) authentication.getPrincipal()));
+        } catch (BadCredentialsException e) {
+            verify.lowCardinalityKeyValue(OUTCOME, "bad_credentials");
+            throw e;
+        } catch (AuthenticationException e) {
+            verify.lowCardinalityKeyValue(OUTCOME, "rejected");
+            throw e;
+        } catch (RuntimeException e) {
+            verify.lowCardinalityKeyValue(OUTCOME, "error").error(e);
+            throw e;
+        } finally {
+            verify.stop();
+        }
+    }
+
+    private String token(UserDetails principal) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaims.ROLES, principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        if (principal instanceof BankUserDetails bankUser) {
+            claims.put(JwtClaims.USER_ID, bankUser.getId());
+            claims.put(JwtClaims.EPOCH, bankUser.getTokenEpoch());
+        }
+        return jwtService.generateToken(principal.getUsername(), claims);
+    }
+
+    /**
+     * Заполненность очереди интервалами, чтобы тег оставался низкокардинальным.
+     */
+    static String queueBucket(int size, int capacity) {
+        if (size == 0) {
+            return "empty";
+        }
+        if (size >= capacity) {
+            return "full";
+        }
+        return size * 2 < capacity ? "below_half" : "above_half";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
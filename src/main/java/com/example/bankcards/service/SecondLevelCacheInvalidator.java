@@ -0,0 +1,48 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RoleRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Явный сброс кэша второго уровня для изменений, о которых Hibernate не знает:
+ * правка таблиц roles/user_roles через SQL или миграцией, изменения на другом экземпляре приложения.
+ * Изменения через JPA в этом экземпляре Hibernate сбрасывает сам.
+ */
+@Component
+public class SecondLevelCacheInvalidator {
+    private static final String USER_ROLES = User.class.getName() + ".roles";
+
+    private final Cache cache;
+
+    public SecondLevelCacheInvalidator(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    /**
+     * Сбрасывает роли, поиск роли по имени и роли всех пользователей.
+     */
+    public void evictRoles() {
+        cache.evictEntityData(Role.class);
+        cache.evictQueryRegion(RoleRepository.BY_NAME_CACHE_REGION);
+        cache.evictCollectionData(USER_ROLES);
+    }
+
+    /**
+     * Сбрасывает закэшированный набор ролей одного пользователя.
+     */
+    public void evictUserRoles(Long userId) {
+        cache.evictCollectionData(USER_ROLES, userId);
+    }
+
+    /**
+     * Сбрасывает все регионы.
+     */
+    public void evictAll() {
+        cache.evictAllRegions();
+    }
+}
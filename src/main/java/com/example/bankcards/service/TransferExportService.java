@@ -0,0 +1,97 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.TransferExportRow;
+import com.example.bankcards.repository.TransferExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка истории переводов в NDJSON или CSV.
+ * Строки читаются курсором порциями по fetch size и сразу пишутся в ответ,
+ * поэтому расход памяти не зависит от числа переводов.
+ */
+@Service
+public class TransferExportService {
+    static final String CSV_HEADER = "id,fromCardId,toCardId,amountMinor,createdAt";
+
+    private final TransferExportRepository transferExportRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public TransferExportService(TransferExportRepository transferExportRepository,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.export.fetch-size:500}") int fetchSize) {
+        this.transferExportRepository = transferExportRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Пишет все переводы пользователя в поток. Поток не закрывается.
+     * Данные сбрасываются клиенту после каждой порции из fetch size строк.
+     */
+    public void export(UserRef user, ExportFormat format, OutputStream out) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<TransferExportRow> rows = transferExportRepository.streamByUser(user.id(), fetchSize)) {
+                if (format == ExportFormat.CSV) {
+                    writeCsv(rows.iterator(), out);
+                } else {
+                    writeNdjson(rows.iterator(), out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeNdjson(Iterator<TransferExportRow> rows, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        SequenceWriter json = objectMapper.writer().withRootValueSeparator("\n").writeValues(writer);
+        int written = 0;
+        while (rows.hasNext()) {
+            json.write(rows.next());
+            if (++written % fetchSize == 0) {
+                json.flush();
+            }
+        }
+        json.flush();
+        if (written > 0) {
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(Iterator<TransferExportRow> rows, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        int written = 0;
+        while (rows.hasNext()) {
+            TransferExportRow row = rows.next();
+            writer.write(row.id() + "," + row.fromCardId() + "," + row.toCardId() + "," + row.amountMinor() + "," + row.createdAt() + "\n");
+            if (++written % fetchSize == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+}
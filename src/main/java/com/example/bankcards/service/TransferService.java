@@ -1,86 +1,197 @@
 package com.example.bankcards.service;
 
 
+import com.example.bankcards.config.EndpointObservations;
 import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.Transfer;
-import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BadRequestException;
 import com.example.bankcards.exception.NotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
-import jakarta.transaction.Transactional;
+import com.example.bankcards.util.CursorCodec;
+import io.micrometer.observation.Observation;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
 
 /**
  * Логика переводов между картами пользователя.
  */
 @Service
 public class TransferService {
+    private static final int MAX_PAGE_SIZE = 200;
+    static final String INSUFFICIENT_FUNDS = "Insufficient funds";
+    static final String INACTIVE_CARD = "Both cards must be active";
+
     private final TransferRepository transferRepository;
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final EndpointObservations observations;
+    private final LedgerService ledgerService;
+    private final TransferSummaryService transferSummaryService;
 
-    public TransferService(TransferRepository transferRepository, CardRepository cardRepository, UserRepository userRepository) {
+    public TransferService(TransferRepository transferRepository, CardRepository cardRepository, UserRepository userRepository,
+                           CurrentUserResolver currentUserResolver, EndpointObservations observations,
+                           LedgerService ledgerService, TransferSummaryService transferSummaryService) {
         this.transferRepository = transferRepository;
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.observations = observations;
+        this.ledgerService = ledgerService;
+        this.transferSummaryService = transferSummaryService;
     }
 
     /**
      * Возвращает постраничный список переводов текущего пользователя.
      */
-    public Page<Transfer> list(Authentication auth, Pageable pageable) {
-        User user = currentUser(auth);
-        return transferRepository.findByUser(user, pageable);
+    @Transactional(readOnly = true)
+    public Page<TransferResponse> list(Authentication auth, Pageable pageable) {
+        UserRef user = currentUserResolver.resolve(auth);
+        return transferRepository.findResponsesByUserId(user.id(), pageable);
+    }
+
+    /**
+     * Возвращает keyset-страницу переводов текущего пользователя (новые сначала)
+     * без подсчета общего количества.
+     *
+     * @param after курсор из предыдущей страницы или null для первой
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TransferResponse> listBefore(Authentication auth, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        UserRef user = currentUserResolver.resolve(auth);
+        Limit fetch = Limit.of(limit + 1);
+        List<TransferResponse> transfers;
+        if (after == null) {
+            transfers = transferRepository.findLatest(user.id(), fetch);
+        } else {
+            long[] cursor = CursorCodec.decode(after, 3);
+            OffsetDateTime createdAt = Instant.ofEpochSecond(cursor[0], cursor[1]).atOffset(ZoneOffset.UTC);
+            transfers = transferRepository.findBefore(user.id(), createdAt, cursor[2], fetch);
+        }
+        boolean hasNext = transfers.size() > limit;
+        List<TransferResponse> items = hasNext ? transfers.subList(0, limit) : transfers;
+        String nextCursor = null;
+        if (hasNext) {
+            TransferResponse last = items.get(items.size() - 1);
+            Instant createdAt = last.createdAt().toInstant();
+            nextCursor = CursorCodec.encode(createdAt.getEpochSecond(), createdAt.getNano(), last.id());
+        }
+        return new CursorPage<>(items, nextCursor);
     }
 
     /**
-        * Создает перевод, проверяя владение картами, статусы и достаточность средств (проверяя владелбца, статус и баланс).
+     * Создает перевод: блокирует карту списания (FOR UPDATE) и карту зачисления (FOR SHARE) в порядке
+     * возрастания id, поэтому встречные переводы не дают дедлоков, и дописывает две проводки в журнал.
+     * Строки карт не обновляются: зачисления на одну карту идут параллельно, очередь есть только у списаний,
+     * которым нужна проверка баланса. Месячные итоги карт обновляются в той же транзакции.
+     * Ответ читается проекцией после вставки, чтобы не отдавать ленивые ссылки сущности.
+     * Время и исход (тег outcome) пишутся в таймер bank.transfer.create.
      */
     @Transactional
-    public Transfer create(Authentication auth, CreateTransferRequest req) {
+    public TransferResponse create(Authentication auth, CreateTransferRequest req) {
+        Observation observation = observations.start("bank.transfer.create");
+        try {
+            TransferResponse response = doCreate(auth, req);
+            observation.lowCardinalityKeyValue("outcome", "success");
+            return response;
+        } catch (RuntimeException e) {
+            observation.lowCardinalityKeyValue("outcome", outcome(e));
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private TransferResponse doCreate(Authentication auth, CreateTransferRequest req) {
         if (req.fromCardId().equals(req.toCardId())) {
             throw new BadRequestException("Cannot transfer to the same card");
         }
         if (req.amountMinor() <= 0) {
             throw new BadRequestException("Amount must be positive");
         }
-        User user = currentUser(auth);
-        Card from = cardRepository.findById(req.fromCardId()).orElseThrow(() -> new NotFoundException("From card not found"));
-        Card to = cardRepository.findById(req.toCardId()).orElseThrow(() -> new NotFoundException("To card not found"));
-        if (!from.getUser().getId().equals(user.getId()) || !to.getUser().getId().equals(user.getId())) {
-            throw new NotFoundException("Card not found");
-        }
-        if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
-            throw new BadRequestException("Both cards must be active");
+        UserRef user = currentUserResolver.resolve(auth);
+        Card from;
+        Card to;
+        if (req.fromCardId() < req.toCardId()) {
+            from = debitable(user, req.fromCardId(), req.amountMinor());
+            to = creditable(user, req.toCardId());
+        } else {
+            to = creditable(user, req.toCardId());
+            from = debitable(user, req.fromCardId(), req.amountMinor());
         }
-        if (from.getBalanceMinor() < req.amountMinor()) {
-            throw new BadRequestException("Insufficient funds");
-        }
-        from.setBalanceMinor(from.getBalanceMinor() - req.amountMinor());
-        to.setBalanceMinor(to.getBalanceMinor() + req.amountMinor());
-        cardRepository.save(from);
-        cardRepository.save(to);
-        Transfer transfer = Transfer.builder()
-                .user(user)
+        Transfer transfer = transferRepository.save(Transfer.builder()
+                .user(userRepository.getReferenceById(user.id()))
                 .fromCard(from)
                 .toCard(to)
                 .amountMinor(req.amountMinor())
-                .build();
-        return transferRepository.save(transfer);
+                .build());
+        ledgerService.record(transfer);
+        transferSummaryService.record(user.id(), transfer.getCreatedAt(),
+                List.of(new TransferSummaryService.Movement(from.getId(), to.getId(), req.amountMinor())));
+        return transferRepository.findResponseById(transfer.getId())
+                .orElseThrow(() -> new NotFoundException("Transfer not found"));
     }
 
     /**
-     * Возвращает пользователя.
+     * Блокирует карту списания и проверяет баланс отдельным запросом после блокировки,
+     * чтобы учесть проводки всех завершившихся до нее списаний.
      */
-    private User currentUser(Authentication auth) {
-        String email = auth.getName();
-        return userRepository.findByEmail(email).orElseThrow(() -> new NotFoundException("User not found"));
+    private Card debitable(UserRef user, Long cardId, long amount) {
+        Card card = cardRepository.findForUpdateById(cardId)
+                .orElseThrow(() -> new NotFoundException("From card not found"));
+        ensureUsable(user, card);
+        if (ledgerService.balance(card) < amount) {
+            throw new BadRequestException(INSUFFICIENT_FUNDS);
+        }
+        return card;
+    }
+
+    private Card creditable(UserRef user, Long cardId) {
+        Card card = cardRepository.findForShareById(cardId)
+                .orElseThrow(() -> new NotFoundException("To card not found"));
+        ensureUsable(user, card);
+        return card;
+    }
+
+    private static void ensureUsable(UserRef user, Card card) {
+        if (!card.getUser().getId().equals(user.id())) {
+            throw new NotFoundException("Card not found");
+        }
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            throw new BadRequestException(INACTIVE_CARD);
+        }
+    }
+
+    private static String outcome(RuntimeException e) {
+        if (e instanceof NotFoundException) {
+            return "card_not_found";
+        }
+        if (e instanceof BadRequestException) {
+            return switch (String.valueOf(e.getMessage())) {
+                case INSUFFICIENT_FUNDS -> "insufficient_funds";
+                case INACTIVE_CARD -> "inactive_card";
+                default -> "invalid_request";
+            };
+        }
+        return "error";
     }
 }
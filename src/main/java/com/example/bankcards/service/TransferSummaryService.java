@@ -0,0 +1,106 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferSummaryResponse;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.TransferSummaryRepository;
+import com.example.bankcards.repository.TransferSummaryWriter;
+import com.example.bankcards.repository.TransferSummaryWriter.CardTotals;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Месячные итоги переводов по картам. Итоги дополняются в транзакции каждого перевода,
+ * поэтому отчет читает по строке на карту и месяц, а не все переводы за период.
+ * Месяц определяется по времени создания перевода в UTC.
+ */
+@Service
+public class TransferSummaryService {
+    static final int MAX_MONTHS = 120;
+
+    private final TransferSummaryRepository transferSummaryRepository;
+    private final TransferSummaryWriter transferSummaryWriter;
+    private final CurrentUserResolver currentUserResolver;
+
+    public TransferSummaryService(TransferSummaryRepository transferSummaryRepository,
+                                  TransferSummaryWriter transferSummaryWriter,
+                                  CurrentUserResolver currentUserResolver) {
+        this.transferSummaryRepository = transferSummaryRepository;
+        this.transferSummaryWriter = transferSummaryWriter;
+        this.currentUserResolver = currentUserResolver;
+    }
+
+    /**
+     * Прибавляет переводы пользователя, созданные в момент createdAt, к итогам их карт.
+     * Должен вызываться в транзакции, создающей переводы.
+     */
+    public void record(Long userId, OffsetDateTime createdAt, List<Movement> transfers) {
+        Map<Long, Totals> byCard = new TreeMap<>();
+        for (Movement t : transfers) {
+            byCard.computeIfAbsent(t.fromCardId(), id -> new Totals()).sent(t.amountMinor());
+            byCard.computeIfAbsent(t.toCardId(), id -> new Totals()).received(t.amountMinor());
+        }
+        if (byCard.isEmpty()) {
+            return;
+        }
+        List<CardTotals> totals = byCard.entrySet().stream()
+                .map(e -> e.getValue().toCardTotals(e.getKey()))
+                .toList();
+        transferSummaryWriter.add(userId, YearMonth.from(createdAt.atZoneSameInstant(ZoneOffset.UTC)).atDay(1), totals);
+    }
+
+    /**
+     * Итоги текущего пользователя за месяцы [from, to], новые месяцы сначала.
+     * По умолчанию to — текущий месяц, from — 11 месяцев до to.
+     */
+    @Transactional(readOnly = true)
+    public List<TransferSummaryResponse> list(Authentication auth, YearMonth from, YearMonth to) {
+        YearMonth last = to != null ? to : YearMonth.now(ZoneOffset.UTC);
+        YearMonth first = from != null ? from : last.minusMonths(11);
+        if (first.isAfter(last)) {
+            throw new BadRequestException("Month 'from' must not be after 'to'");
+        }
+        if (first.until(last, ChronoUnit.MONTHS) >= MAX_MONTHS) {
+            throw new BadRequestException("Range must not exceed " + MAX_MONTHS + " months");
+        }
+        UserRef user = currentUserResolver.resolve(auth);
+        return transferSummaryRepository.findByUserIdAndMonths(user.id(), first.atDay(1), last.atDay(1)).stream()
+                .map(TransferSummaryResponse::from)
+                .toList();
+    }
+
+    /** Перевод для учета в итогах. */
+    public record Movement(Long fromCardId, Long toCardId, long amountMinor) {}
+
+    private static final class Totals {
+        private long sentCount;
+        private long sentMinor;
+        private long receivedCount;
+        private long receivedMinor;
+        private long largestMinor;
+
+        void sent(long amount) {
+            sentCount++;
+            sentMinor += amount;
+            largestMinor = Math.max(largestMinor, amount);
+        }
+
+        void received(long amount) {
+            receivedCount++;
+            receivedMinor += amount;
+            largestMinor = Math.max(largestMinor, amount);
+        }
+
+        CardTotals toCardTotals(Long cardId) {
+            return new CardTotals(cardId, sentCount, sentMinor, receivedCount, receivedMinor, largestMinor);
+        }
+    }
+}
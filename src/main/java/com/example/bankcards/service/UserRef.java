@@ -0,0 +1,16 @@
+package com.example.bankcards.service;
+
+import java.util.Set;
+
+/**
+ * Легкая ссылка на текущего пользователя: id, email и авторити (ROLE_*), без загрузки сущности.
+ */
+public record UserRef(Long id, String email, Set<String> roles) {
+    public UserRef {
+        roles = Set.copyOf(roles);
+    }
+
+    public boolean isAdmin() {
+        return roles.contains("ROLE_ADMIN");
+    }
+}
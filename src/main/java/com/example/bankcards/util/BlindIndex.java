@@ -0,0 +1,44 @@
+package com.example.bankcards.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Слепой индекс номера карты: HMAC-SHA256 на отдельном ключе.
+ * Одинаковые номера дают одинаковое значение, поэтому по нему можно искать и проверять
+ * уникальность без расшифровки; без ключа значение не позволяет перебрать номера.
+ */
+@Component
+public class BlindIndex {
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    public BlindIndex(@Value("${security.crypto.index-secret}") String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Возвращает 32 байта HMAC для номера карты.
+     */
+    public byte[] of(String cardNumber) {
+        return macs.get().doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
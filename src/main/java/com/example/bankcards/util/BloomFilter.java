@@ -0,0 +1,61 @@
+package com.example.bankcards.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный фильтр Блума для равномерно распределенных ключей (например, HMAC).
+ * mightContain == false означает, что ключ точно не добавлялся; true — что, возможно, добавлялся.
+ * Позиции битов берутся из первых 16 байт ключа двойным хешированием, без повторного хеширования.
+ */
+public final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions ожидаемое число ключей; при превышении растет доля ложных срабатываний
+     * @param falsePositiveRate  желаемая доля ложных срабатываний, от 0 до 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters");
+        }
+        double ln2 = Math.log(2);
+        long bits = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+    }
+
+    public void put(byte[] key) {
+        long h1 = hash1(key);
+        long h2 = hash2(key);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            words.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+        }
+    }
+
+    public boolean mightContain(byte[] key) {
+        long h1 = hash1(key);
+        long h2 = hash2(key);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash1(byte[] key) {
+        return ByteBuffer.wrap(key).getLong(0);
+    }
+
+    private static long hash2(byte[] key) {
+        // нечетный шаг, чтобы позиции не совпадали при любом размере
+        return ByteBuffer.wrap(key).getLong(8) | 1L;
+    }
+}
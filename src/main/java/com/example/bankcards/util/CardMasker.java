@@ -4,16 +4,31 @@ package com.example.bankcards.util;
  * Утилита для маскирования номера карты с показом только последних 4 цифр.
  */
 public final class CardMasker {
+    /** Префикс маски перед последними 4 цифрами; используется и в JPQL-проекциях. */
+    public static final String MASK_PREFIX = "**** **** **** ";
+    /** Маска, когда последние 4 цифры неизвестны. */
+    public static final String MASK_UNKNOWN = "****";
+
     private CardMasker() {}
 
     /**
      * Возвращает маску в формате: "**** **** **** 1234".
      */
     public static String mask(String fullNumber) {
+        String last4 = last4(fullNumber);
+        if (last4 == null) {
+            return MASK_UNKNOWN;
+        }
+        return MASK_PREFIX + last4;
+    }
+
+    /**
+     * Возвращает последние 4 цифры номера или null, если номер короче.
+     */
+    public static String last4(String fullNumber) {
         if (fullNumber == null || fullNumber.length() < 4) {
-            return "****";
+            return null;
         }
-        String last4 = fullNumber.substring(fullNumber.length() - 4);
-        return "**** **** **** " + last4;
+        return fullNumber.substring(fullNumber.length() - 4);
     }
 }
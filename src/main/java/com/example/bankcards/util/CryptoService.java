@@ -1,20 +1,27 @@
 package com.example.bankcards.util;
 
-
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.entity.Card;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * Класс для симметричного шифрования AES-GCM для шифрования/дешифрования данных.
+ * Шифртекст хранится одним массивом: IV (12 байт), затем шифртекст с тегом.
+ * Экземпляры Cipher переиспользуются через небольшой пул.
+ * Время операций пишется в таймер bank.crypto с тегом operation.
  */
 @Component
 public class CryptoService {
@@ -25,47 +32,103 @@ public class CryptoService {
 
     private final SecretKey secretKey;
     private final SecureRandom secureRandom = new SecureRandom();
+    private final BlockingQueue<Cipher> ciphers;
+    private final EndpointObservations observations;
 
-    public CryptoService(@Value("${security.crypto.secret}") String secret) {
+    public CryptoService(@Value("${security.crypto.secret}") String secret,
+                         @Value("${security.crypto.cipher-pool-size:0}") int cipherPoolSize,
+                         EndpointObservations observations) {
         byte[] keyBytes = ensureKeyLength(secret);
         this.secretKey = new SecretKeySpec(keyBytes, AES);
+        int poolSize = cipherPoolSize > 0 ? cipherPoolSize : Runtime.getRuntime().availableProcessors() * 2;
+        this.ciphers = new ArrayBlockingQueue<>(poolSize);
+        this.observations = observations;
     }
 
     /**
-     * Шифрует исходный текст и возвращает пару: [base64(шифртекст), base64(iv)].
+     * Шифрует исходный текст и возвращает IV, за которым следует шифртекст.
      */
-    public String[] encrypt(String plaintext) {
+    public byte[] encrypt(String plaintext) {
+        return observations.observe("bank.crypto", "operation", "encrypt", () -> doEncrypt(plaintext));
+    }
+
+    private byte[] doEncrypt(String plaintext) {
+        Cipher cipher = borrow();
         try {
             byte[] iv = new byte[IV_LENGTH_BYTES];
             secureRandom.nextBytes(iv);
-            Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
             cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-            return new String[] {
-                    Base64.getEncoder().encodeToString(ciphertext),
-                    Base64.getEncoder().encodeToString(iv)
-            };
-        } catch (Exception e) {
+            byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+            byte[] out = new byte[IV_LENGTH_BYTES + cipher.getOutputSize(input.length)];
+            System.arraycopy(iv, 0, out, 0, IV_LENGTH_BYTES);
+            cipher.doFinal(input, 0, input.length, out, IV_LENGTH_BYTES);
+            release(cipher);
+            return out;
+        } catch (GeneralSecurityException e) {
             throw new IllegalStateException("Encryption failed", e);
         }
     }
 
     /**
-     * Дешифрует и возвращает исходный текст по base64-шифртексту и IV.
+     * Дешифрует и возвращает исходный текст по массиву IV + шифртекст.
+     */
+    public String decrypt(byte[] ivAndCiphertext) {
+        return observations.observe("bank.crypto", "operation", "decrypt", () -> {
+            Cipher cipher = borrow();
+            String plaintext = decrypt(cipher, ivAndCiphertext);
+            release(cipher);
+            return plaintext;
+        });
+    }
+
+    /**
+     * Дешифрует номера всех карт одним экземпляром Cipher (для страницы результатов).
      */
-    public String decrypt(String base64Ciphertext, String base64Iv) {
+    public List<String> decryptAll(List<Card> cards) {
+        return observations.observe("bank.crypto", "operation", "decrypt_page", () -> {
+            Cipher cipher = borrow();
+            List<String> plaintexts = new ArrayList<>(cards.size());
+            for (Card card : cards) {
+                plaintexts.add(decrypt(cipher, card.getCardNumberCiphertext()));
+            }
+            release(cipher);
+            return plaintexts;
+        });
+    }
+
+    private String decrypt(Cipher cipher, byte[] ivAndCiphertext) {
         try {
-            byte[] ciphertext = Base64.getDecoder().decode(base64Ciphertext);
-            byte[] iv = Base64.getDecoder().decode(base64Iv);
-            Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
-            byte[] plaintext = cipher.doFinal(ciphertext);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, ivAndCiphertext, 0, IV_LENGTH_BYTES));
+            byte[] plaintext = cipher.doFinal(ivAndCiphertext, IV_LENGTH_BYTES, ivAndCiphertext.length - IV_LENGTH_BYTES);
             return new String(plaintext, StandardCharsets.UTF_8);
-        } catch (Exception e) {
+        } catch (GeneralSecurityException | RuntimeException e) {
             throw new IllegalStateException("Decryption failed", e);
         }
     }
 
+    /**
+     * Берет Cipher из пула или создает новый, если пул пуст.
+     */
+    private Cipher borrow() {
+        Cipher cipher = ciphers.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        try {
+            return Cipher.getInstance(AES_GCM_NO_PADDING);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    }
+
+    /**
+     * Возвращает Cipher в пул; лишние экземпляры отбрасываются.
+     * После ошибки Cipher в пул не возвращается.
+     */
+    private void release(Cipher cipher) {
+        ciphers.offer(cipher);
+    }
+
     /**
      * Получает ключ.
      */
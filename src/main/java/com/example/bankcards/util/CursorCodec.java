@@ -0,0 +1,51 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Утилита для непрозрачных курсоров keyset-пагинации: числовые значения ключа сортировки
+ * последнего элемента склеиваются через ':' и кодируются в base64url.
+ */
+public final class CursorCodec {
+    private static final String SEPARATOR = ":";
+
+    private CursorCodec() {}
+
+    /**
+     * Кодирует значения ключа сортировки.
+     */
+    public static String encode(long... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (long part : parts) {
+            if (!sb.isEmpty()) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(part);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Раскодирует курсор в ожидаемое число значений.
+     *
+     * @throws BadRequestException если курсор поврежден или выдан другим списком
+     */
+    public static long[] decode(String cursor, int expectedParts) {
+        try {
+            String[] raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR);
+            if (raw.length != expectedParts) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            long[] parts = new long[expectedParts];
+            for (int i = 0; i < expectedParts; i++) {
+                parts[i] = Long.parseLong(raw[i]);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bankcards.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Утилита для ETag карт. Переводы не меняют строку карты, поэтому тег карты — версия строки
+ * вместе с текущим балансом: "версия-баланс". Тег страницы — хэш строк страницы и общего количества.
+ */
+public final class ETags {
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+    private static final int PAGE_DIGEST_BYTES = 12;
+
+    private ETags() {}
+
+    /**
+     * Тег карты по версии строки и текущему балансу.
+     */
+    public static String card(long version, long balanceMinor) {
+        return "\"" + version + "-" + balanceMinor + "\"";
+    }
+
+    /**
+     * Строка страницы для {@link #page}: id, версия и баланс карты.
+     */
+    public static String entry(long id, long version, long balanceMinor) {
+        return id + ":" + version + ":" + balanceMinor;
+    }
+
+    /**
+     * Тег страницы: меняется при изменении любой карты на странице, состава страницы или общего количества.
+     */
+    public static String page(long totalElements, List<String> entries) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(Long.toString(totalElements).getBytes(StandardCharsets.UTF_8));
+        for (String entry : entries) {
+            digest.update((byte) ',');
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] hash = digest.digest();
+        byte[] prefix = new byte[PAGE_DIGEST_BYTES];
+        System.arraycopy(hash, 0, prefix, 0, PAGE_DIGEST_BYTES);
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(prefix) + "\"";
+    }
+
+    /**
+     * Слабое сравнение для If-None-Match: заголовок со списком тегов или "*" совпадает с текущим тегом.
+     */
+    public static boolean matches(String header, String eTag) {
+        String current = opaque(eTag);
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals(ANY) || opaque(tag).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сравнение для If-Match по версии строки карты: баланс в теге не учитывается,
+     * так как переводы не конфликтуют с изменением атрибутов карты.
+     */
+    public static boolean matchesVersion(String header, long version) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals(ANY)) {
+                return true;
+            }
+            String value = opaque(tag);
+            int separator = value.indexOf('-');
+            try {
+                if (separator > 0 && Long.parseLong(value.substring(0, separator)) == version) {
+                    return true;
+                }
+            } catch (NumberFormatException ignored) {
+                // Чужой тег, например тег страницы, ни с одной версией не совпадает.
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        String value = tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag;
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+}
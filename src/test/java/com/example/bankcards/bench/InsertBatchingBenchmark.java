@@ -0,0 +1,122 @@
+package com.example.bankcards.bench;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Массовая вставка карт и переводов без пакетов JDBC (по одному INSERT на строку,
+ * как при IDENTITY) и с пакетами, которые стали возможны после перехода на последовательности.
+ * Запуск: mvn -Pbench test -Dtest=InsertBatchingBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class InsertBatchingBenchmark {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 5000);
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void bulkInsert_rowByRow_vsBatched() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        insert(1);
+        insert(50);
+
+        long[] rowByRow = measure(1, stats);
+        long[] batched = measure(50, stats);
+
+        System.out.printf("%n%-12s %12s %14s %16s%n", "jdbc batch", "rows", "rows/s", "statements");
+        print("1", rowByRow);
+        print("50", batched);
+
+        assertTrue(batched[1] < rowByRow[1], "batched inserts must use fewer JDBC statements");
+    }
+
+    /** @return {суммарное время в нс, число подготовленных JDBC-выражений} */
+    private long[] measure(int batchSize, Statistics stats) {
+        stats.clear();
+        long elapsed = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            elapsed += insert(batchSize);
+        }
+        return new long[] {elapsed, stats.getPrepareStatementCount()};
+    }
+
+    private void print(String mode, long[] result) {
+        long rows = 2L * ROWS * ROUNDS;
+        System.out.printf("%-12s %12d %14.0f %16d%n", mode, rows, rows / (result[0] / 1e9), result[1]);
+    }
+
+    /**
+     * Вставляет ROWS карт и ROWS переводов между ними в одной транзакции.
+     *
+     * @return время в нс
+     */
+    private long insert(int batchSize) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return tx.execute(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            long started = System.nanoTime();
+            User user = User.builder()
+                    .email("bench-" + UUID.randomUUID() + "@test.com")
+                    .passwordHash("x")
+                    .fullName("Bench")
+                    .enabled(true)
+                    .build();
+            entityManager.persist(user);
+            List<Card> cards = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                Card card = Card.builder()
+                        .user(user)
+                        .cardNumberCiphertext(new byte[] {1, 2, 3})
+                        .cardLast4("0000")
+                        .ownerName("Bench")
+                        .expiration(LocalDate.now().plusYears(3))
+                        .status(CardStatus.ACTIVE)
+                        .balanceMinor(0L)
+                        .build();
+                entityManager.persist(card);
+                cards.add(card);
+            }
+            for (int i = 0; i < ROWS; i++) {
+                entityManager.persist(Transfer.builder()
+                        .user(user)
+                        .fromCard(cards.get(i))
+                        .toCard(cards.get((i + 1) % ROWS))
+                        .amountMinor(1L)
+                        .build());
+            }
+            entityManager.flush();
+            entityManager.clear();
+            return System.nanoTime() - started;
+        });
+    }
+}
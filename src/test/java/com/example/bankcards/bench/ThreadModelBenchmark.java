@@ -0,0 +1,155 @@
+package com.example.bankcards.bench;
+
+import com.example.bankcards.BankcardsApplication;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.support.TestData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Пропускная способность и p99 для GET /api/cards и GET /api/transfers при обработке запросов
+ * потоками Tomcat и виртуальными потоками (профиль virtual). Приложение поднимается дважды
+ * с одинаковым пулом соединений; bench.clients клиентов шлют запросы без пауз.
+ * На H2 запросы почти не ждут БД, поэтому разница меньше, чем на PostgreSQL:
+ * -Dspring.datasource.url=jdbc:postgresql://... запускает сравнение на реальной БД.
+ * Запуск: mvn -Pbench,java21 test -Dtest=ThreadModelBenchmark (на Java 17 — только платформенные потоки)
+ */
+@Tag("benchmark")
+class ThreadModelBenchmark {
+
+    private static final int CLIENTS = Integer.getInteger("bench.clients", 400);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("bench.requestsPerClient", 50);
+    private static final int POOL_SIZE = Integer.getInteger("bench.poolSize", 20);
+    private static final List<String> ENDPOINTS = List.of("/api/cards?size=20", "/api/transfers?size=20");
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void cardsAndTransfers_platformVsVirtualThreads() throws Exception {
+        List<Result> results = new ArrayList<>(run("platform", false));
+        if (Runtime.version().feature() >= 21) {
+            results.addAll(run("virtual", true));
+        } else {
+            System.out.println("virtual threads: skipped, needs Java 21 (mvn -Pbench,java21 ...)");
+        }
+
+        System.out.printf("%n%-10s %-22s %10s %10s %10s %10s%n", "threads", "endpoint", "req/s", "p50 ms", "p99 ms", "errors");
+        for (Result r : results) {
+            System.out.printf("%-10s %-22s %10.0f %10.1f %10.1f %10d%n",
+                    r.mode, r.endpoint, r.throughput(), r.percentileMs(50), r.percentileMs(99), r.errors);
+        }
+        for (Result r : results) {
+            assertEquals(0, r.errors, r.mode + " " + r.endpoint + " must not fail");
+        }
+    }
+
+    private List<Result> run(String mode, boolean virtual) throws Exception {
+        String[] profiles = virtual ? new String[] {"test", "virtual"} : new String[] {"test"};
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(BankcardsApplication.class)
+                .profiles(profiles)
+                .run("--server.port=0",
+                        "--app.card-backfill.enabled=false",
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--logging.level.com.example.bankcards=INFO",
+                        "--logging.level.org.springframework.security=INFO",
+                        "--logging.level.org.springframework.web=INFO",
+                        "--logging.level.org.hibernate.SQL=WARN")) {
+            String baseUrl = "http://localhost:" + ctx.getEnvironment().getProperty("local.server.port");
+            String token = seedAndLogin(ctx, baseUrl);
+            List<Result> results = new ArrayList<>();
+            for (String endpoint : ENDPOINTS) {
+                load(baseUrl + endpoint, token, Math.max(1, REQUESTS_PER_CLIENT / 10));
+                results.add(measure(mode, endpoint, baseUrl + endpoint, token));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Создает пользователя с 20 картами и 200 переводами и возвращает его JWT.
+     */
+    private String seedAndLogin(ConfigurableApplicationContext ctx, String baseUrl) throws Exception {
+        TestData data = new TestData(ctx);
+        User user = data.user("bench@test.com", data.passwordHash("password"), "Bench");
+        List<Card> cards = data.cards(user, 20, 1_000_000L, i -> String.format("4000%012d", i));
+        data.transfers(user, cards, 200);
+
+        HttpResponse<String> login = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"bench@test.com\",\"password\":\"password\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        return ctx.getBean(ObjectMapper.class).readTree(login.body()).path("token").asText();
+    }
+
+    private Result measure(String mode, String endpoint, String url, String token) throws Exception {
+        long started = System.nanoTime();
+        List<long[]> latencies = load(url, token, REQUESTS_PER_CLIENT);
+        long elapsed = System.nanoTime() - started;
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).filter(l -> l >= 0).sorted().toArray();
+        long errors = latencies.stream().flatMapToLong(Arrays::stream).filter(l -> l < 0).count();
+        return new Result(mode, endpoint, all, errors, elapsed);
+    }
+
+    /**
+     * CLIENTS потоков шлют по requests запросов подряд.
+     *
+     * @return задержки в нс по клиентам; -1 для неуспешных ответов
+     */
+    private List<long[]> load(String url, String token, int requests) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Authorization", "Bearer " + token).GET().build();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    long[] latencies = new long[requests];
+                    for (int i = 0; i < requests; i++) {
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = response.statusCode() == 200 ? System.nanoTime() - start : -1;
+                    }
+                    return latencies;
+                }));
+            }
+            List<long[]> results = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private record Result(String mode, String endpoint, long[] sortedLatencies, long errors, long elapsedNanos) {
+        double throughput() {
+            return sortedLatencies.length / (elapsedNanos / 1e9);
+        }
+
+        double percentileMs(int percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.bankcards.bench;
+
+import com.example.bankcards.config.JwtPrincipal;
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.util.CryptoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнивает перевод через журнал проводок (блокировка карт и вставка проводок) с прежним
+ * чтением-изменением-записью при встречных переводах между двумя «горячими» картами.
+ * Фактический баланс — снимок в строке карты плюс проводки после него.
+ * Запуск: mvn -Pbench test -Dtest=TransferConcurrencyBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class TransferConcurrencyBenchmark {
+
+    private static final int THREADS = Integer.getInteger("bench.threads", 8);
+    private static final int TRANSFERS_PER_THREAD = Integer.getInteger("bench.transfersPerThread", 250);
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private TransferRepository transferRepository;
+    @Autowired
+    private LedgerService ledgerService;
+    @Autowired
+    private CryptoService cryptoService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+    private Authentication auth;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .email("bench-" + UUID.randomUUID() + "@test.com")
+                .passwordHash("x")
+                .fullName("Bench")
+                .enabled(true)
+                .build());
+        auth = new UsernamePasswordAuthenticationToken(new JwtPrincipal(user.getId(), user.getEmail()), null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @Test
+    void atomicTransfers_vsReadModifyWrite() throws Exception {
+        Result legacy = run("read-modify-write", this::legacyTransfer);
+        Result atomic = run("ledger", (from, to, amount) ->
+                transferService.create(auth, new CreateTransferRequest(from, to, amount)));
+
+        System.out.printf("%n%-18s %10s %10s %10s %12s%n", "mode", "ok", "failed", "ops/s", "lost minor");
+        for (Result r : List.of(legacy, atomic)) {
+            System.out.printf("%-18s %10d %10d %10.0f %12d%n", r.mode, r.succeeded, r.failed, r.throughput(), r.lostMinor);
+        }
+
+        assertEquals(0, atomic.lostMinor, "ledger transfers must not lose updates");
+        assertEquals(0, atomic.failed, "ledger transfers must not deadlock or fail");
+    }
+
+    /**
+     * Прежняя реализация: читает обе карты, проверяет баланс в Java и сохраняет.
+     */
+    private void legacyTransfer(Long fromId, Long toId, long amount) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Card from = cardRepository.findById(fromId).orElseThrow();
+            Card to = cardRepository.findById(toId).orElseThrow();
+            if (from.getBalanceMinor() < amount) {
+                throw new IllegalStateException("Insufficient funds");
+            }
+            from.setBalanceMinor(from.getBalanceMinor() - amount);
+            to.setBalanceMinor(to.getBalanceMinor() + amount);
+            cardRepository.save(from);
+            cardRepository.save(to);
+            transferRepository.save(Transfer.builder()
+                    .user(user).fromCard(from).toCard(to).amountMinor(amount).build());
+        });
+    }
+
+    private Result run(String mode, TransferCall call) throws Exception {
+        Card a = newCard();
+        Card b = newCard();
+        AtomicLong aToB = new AtomicLong();
+        AtomicLong bToA = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    boolean forward = ThreadLocalRandom.current().nextBoolean();
+                    long amount = 1 + ThreadLocalRandom.current().nextInt(100);
+                    try {
+                        if (forward) {
+                            call.transfer(a.getId(), b.getId(), amount);
+                            aToB.addAndGet(amount);
+                        } else {
+                            call.transfer(b.getId(), a.getId(), amount);
+                            bToA.addAndGet(amount);
+                        }
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long elapsed = System.nanoTime() - started;
+        pool.shutdown();
+
+        long expectedA = INITIAL_BALANCE - aToB.get() + bToA.get();
+        long expectedB = INITIAL_BALANCE + aToB.get() - bToA.get();
+        long actualA = ledgerService.balance(cardRepository.findById(a.getId()).orElseThrow());
+        long actualB = ledgerService.balance(cardRepository.findById(b.getId()).orElseThrow());
+        long lost = Math.abs(expectedA - actualA) + Math.abs(expectedB - actualB);
+        long succeeded = (long) THREADS * TRANSFERS_PER_THREAD - failed.get();
+        return new Result(mode, succeeded, failed.get(), elapsed, lost);
+    }
+
+    private Card newCard() {
+        return cardRepository.save(Card.builder()
+                .user(user)
+                .cardNumberCiphertext(cryptoService.encrypt("4000000000000000"))
+                .cardLast4("0000")
+                .ownerName("Bench")
+                .expiration(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balanceMinor(INITIAL_BALANCE)
+                .build());
+    }
+
+    @FunctionalInterface
+    private interface TransferCall {
+        void transfer(Long fromId, Long toId, long amount);
+    }
+
+    private record Result(String mode, long succeeded, long failed, long elapsedNanos, long lostMinor) {
+        double throughput() {
+            return succeeded / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DbUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private DaoAuthenticationProvider provider;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        DbUserDetailsService service = new DbUserDetailsService(userRepository, new EndpointObservations(ObservationRegistry.NOOP));
+        provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(service);
+        provider.setUserDetailsPasswordService(service);
+        provider.setPasswordEncoder(new BCryptPasswordEncoder(5));
+        user = User.builder()
+                .id(1L)
+                .email("user@test.com")
+                .enabled(true)
+                .roles(Set.of(Role.builder().id(1L).name("USER").build()))
+                .build();
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void authenticate_WeakerHash_ShouldRehashWithCurrentStrength() {
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("password"));
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user@test.com", "password"));
+
+        assertTrue(user.getPasswordHash().startsWith("$2a$05$"));
+        assertTrue(new BCryptPasswordEncoder(5).matches("password", user.getPasswordHash()));
+    }
+
+    @Test
+    void authenticate_CurrentStrength_ShouldKeepHash() {
+        String hash = new BCryptPasswordEncoder(5).encode("password");
+        user.setPasswordHash(hash);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user@test.com", "password"));
+
+        assertEquals(hash, user.getPasswordHash());
+    }
+}
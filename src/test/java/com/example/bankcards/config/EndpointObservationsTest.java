@@ -0,0 +1,47 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointObservationsTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void currentEndpoint_BeforeHandlerMapping_ShouldReplaceNumericSegments() {
+        bind(new MockHttpServletRequest("GET", "/api/cards/42/status"));
+
+        assertEquals("GET /api/cards/{id}/status", EndpointObservations.currentEndpoint());
+    }
+
+    @Test
+    void currentEndpoint_MatchedPattern_ShouldUseSameTagAsFilters() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/admin/users/7/revoke");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/admin/users/{userId}/revoke");
+        bind(request);
+
+        assertEquals("POST /api/admin/users/{id}/revoke", EndpointObservations.currentEndpoint());
+    }
+
+    @Test
+    void currentEndpoint_OutsideApiOrRequest_ShouldCollapse() {
+        assertEquals("none", EndpointObservations.currentEndpoint());
+
+        bind(new MockHttpServletRequest("GET", "/wp-login.php"));
+
+        assertEquals("GET other", EndpointObservations.currentEndpoint());
+    }
+
+    private static void bind(MockHttpServletRequest request) {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.bankcards.config;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "test-secret-key-for-testing-purposes-only";
+
+    private JwtService jwtService;
+    private final List<Observation.Context> observed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                observed.add(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        jwtService = new JwtService("bankcards-api", "bankcards-clients", SECRET, 60, 100, new EndpointObservations(registry));
+    }
+
+    @Test
+    void verify_ValidToken_ShouldReturnClaims() {
+        String token = jwtService.generateToken("user@test.com", Map.of("roles", List.of("ROLE_USER")));
+
+        JwtClaims claims = jwtService.verify(token);
+
+        assertEquals("user@test.com", claims.subject());
+        assertEquals(List.of("ROLE_USER"), claims.roles());
+        assertNotNull(claims.expiresAt());
+    }
+
+    @Test
+    void verify_TokenWithUserIdAndEpoch_ShouldBeSelfContained() {
+        String token = jwtService.generateToken("user@test.com", Map.of(
+                JwtClaims.USER_ID, 42L,
+                JwtClaims.EPOCH, 3,
+                JwtClaims.ROLES, List.of("ROLE_ADMIN")));
+
+        JwtClaims claims = jwtService.verify(token);
+
+        assertEquals(42L, claims.userId());
+        assertEquals(3, claims.epoch());
+        assertTrue(claims.isSelfContained());
+    }
+
+    @Test
+    void verify_SameTokenTwice_ShouldReturnCachedClaims() {
+        String token = jwtService.generateToken("user@test.com", Map.of());
+
+        JwtClaims first = jwtService.verify(token);
+        JwtClaims second = jwtService.verify(token);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void verify_TamperedToken_ShouldThrow() {
+        String token = jwtService.generateToken("user@test.com", Map.of());
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+    }
+
+    @Test
+    void verify_ExpiredToken_ShouldThrow() {
+        JwtService expiring = new JwtService("bankcards-api", "bankcards-clients", SECRET, -1, 100, new EndpointObservations(ObservationRegistry.NOOP));
+        String token = expiring.generateToken("user@test.com", Map.of());
+
+        assertThrows(JwtException.class, () -> expiring.verify(token));
+    }
+
+    @Test
+    void verify_TokenSignedWithOtherKey_ShouldThrow() {
+        JwtService other = new JwtService("bankcards-api", "bankcards-clients", "another-secret-key-for-testing-only-123", 60, 100,
+                new EndpointObservations(ObservationRegistry.NOOP));
+        String token = other.generateToken("user@test.com", Map.of());
+
+        assertThrows(JwtException.class, () -> jwtService.verify(token));
+    }
+
+    @Test
+    void isTokenValid_WrongSubject_ShouldReturnFalse() {
+        String token = jwtService.generateToken("user@test.com", Map.of());
+
+        assertTrue(jwtService.isTokenValid(token, "user@test.com"));
+        assertFalse(jwtService.isTokenValid(token, "other@test.com"));
+    }
+
+    @Test
+    void verify_SameTokenTwice_ShouldRecordCacheMissThenHit() {
+        String token = jwtService.generateToken("user@test.com", Map.of());
+
+        jwtService.verify(token);
+        jwtService.verify(token);
+
+        assertEquals(List.of("miss", "hit"), observed.stream()
+                .map(context -> context.getLowCardinalityKeyValue("cache").getValue())
+                .toList());
+        assertEquals("none", observed.get(0).getLowCardinalityKeyValue(EndpointObservations.ENDPOINT).getValue());
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Маршрутизация между двумя независимыми базами H2: в каждой таблица db_marker с именем базы.
+ */
+@SpringBootTest(properties = {
+        "app.card-backfill.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "app.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "app.datasource.replica.read-your-writes-window=PT1M"
+})
+@ActiveProfiles("test")
+class ReadReplicaRoutingTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private UserRepository userRepository;
+
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUseReplica() {
+        assertEquals("replica", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void readWriteTransaction_ShouldUsePrimary() {
+        assertEquals("primary", readWrite.execute(status -> database()));
+    }
+
+    @Test
+    void crudFinder_ShouldReadFromReplica() {
+        String email = "routing-" + UUID.randomUUID() + "@test.com";
+        Long id = userRepository.save(User.builder().email(email).passwordHash("x").fullName("Routing").enabled(true).build()).getId();
+
+        assertTrue(userRepository.findById(id).isEmpty());
+        assertEquals(Boolean.TRUE, readWrite.execute(status -> userRepository.findById(id).isPresent()));
+    }
+
+    @Test
+    void readAfterWrite_SameUser_ShouldUsePrimary() {
+        authenticate("writer@test.com");
+        assertEquals("replica", readOnly.execute(status -> database()));
+
+        readWrite.executeWithoutResult(status -> database());
+
+        assertEquals("primary", readOnly.execute(status -> database()));
+        authenticate("reader@test.com");
+        assertEquals("replica", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void readAfterRolledBackWrite_ShouldStayOnReplica() {
+        authenticate("rollback@test.com");
+
+        readWrite.executeWithoutResult(status -> {
+            database();
+            status.setRollbackOnly();
+        });
+
+        assertEquals("replica", readOnly.execute(status -> database()));
+    }
+
+    private String database() {
+        return (String) entityManager.createNativeQuery("select name from db_marker").getSingleResult();
+    }
+
+    private static void authenticate(String email) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new JwtPrincipal(1L, email), null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @TestConfiguration
+    static class ReplicaSchema {
+
+        /**
+         * Копирует в реплику схему, созданную Hibernate в основной базе, до старта фоновых задач,
+         * и помечает обе базы.
+         */
+        @Bean
+        InitializingBean replicaSchemaCopier(EntityManagerFactory entityManagerFactory,
+                                             @Qualifier("primaryDataSource") DataSource primary,
+                                             @Qualifier("replicaDataSource") DataSource replica) {
+            return () -> {
+                JdbcTemplate primaryJdbc = new JdbcTemplate(primary);
+                WritableJdbc replicaJdbc = new WritableJdbc(replica);
+                for (String statement : primaryJdbc.queryForList("SCRIPT NODATA", String.class)) {
+                    replicaJdbc.execute(statement);
+                }
+                primaryJdbc.execute("create table db_marker (name varchar(16))");
+                primaryJdbc.execute("insert into db_marker values ('primary')");
+                replicaJdbc.execute("create table db_marker (name varchar(16))");
+                replicaJdbc.execute("insert into db_marker values ('replica')");
+            };
+        }
+    }
+
+    /**
+     * Пул реплики только для чтения; схему в тесте пишем через соединение со снятым флагом.
+     */
+    private record WritableJdbc(DataSource dataSource) {
+        void execute(String sql) throws Exception {
+            try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+                connection.setReadOnly(false);
+                statement.execute(sql);
+            }
+        }
+    }
+}
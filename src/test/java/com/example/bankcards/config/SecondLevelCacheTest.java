@@ -0,0 +1,87 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.SecondLevelCacheInvalidator;
+import com.example.bankcards.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Роли и роли пользователя читаются из кэша второго уровня; число SQL-операторов считает {@link SqlStatementCounter}.
+ */
+@SpringBootTest(properties = "app.card-backfill.enabled=false")
+@ActiveProfiles("test")
+class SecondLevelCacheTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private SecondLevelCacheInvalidator invalidator;
+    @Autowired
+    private SqlStatementCounter counter;
+    @Autowired
+    private ApplicationContext context;
+
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        email = "cache-" + UUID.randomUUID() + "@test.com";
+        new TestData(context).user(email, "x", "Cache");
+        invalidator.evictAll();
+    }
+
+    @Test
+    void findByEmail_RolesCached_ShouldLoadOnlyUserRow() {
+        assertTrue(statements(() -> userRepository.findByEmail(email)).count() > 1);
+
+        Counted<User> cached = statements(() -> userRepository.findByEmail(email).orElseThrow());
+
+        assertEquals(1, cached.count());
+        assertEquals(Set.of("USER"), cached.value().getRoles().stream().map(Role::getName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void findByName_Repeated_ShouldHitQueryCache() {
+        statements(() -> roleRepository.findByName("USER"));
+
+        assertEquals(0, statements(() -> roleRepository.findByName("USER")).count());
+    }
+
+    @Test
+    void evictRoles_ShouldReloadRolesFromDatabase() {
+        statements(() -> roleRepository.findByName("USER"));
+
+        invalidator.evictRoles();
+
+        assertEquals(1, statements(() -> roleRepository.findByName("USER")).count());
+    }
+
+    private <T> Counted<T> statements(Supplier<T> action) {
+        counter.begin("test");
+        try {
+            T value = action.get();
+            return new Counted<>(value, counter.count());
+        } finally {
+            counter.end();
+        }
+    }
+
+    private record Counted<T>(T value, int count) {}
+}
@@ -0,0 +1,225 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.support.TestData;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Отзыв токенов: снимок эпох {@link TokenEpochRegistry}, эндпоинт отзыва и выбор пути аутентификации
+ * в {@link JwtAuthFilter} — по клеймам или с загрузкой пользователя из базы.
+ */
+@SpringBootTest(properties = "app.card-backfill.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TokenRevocationTest {
+
+    private static final long REFRESH_MS = 50;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private JwtAuthFilter jwtAuthFilter;
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+    @Autowired
+    private UserDetailsService userDetailsService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private ApplicationContext context;
+
+    private User user;
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        TestData data = new TestData(context);
+        String suffix = UUID.randomUUID().toString();
+        user = data.user("revoke-" + suffix + "@test.com", "x", "Revoke");
+        Role adminRole = roleRepository.findByName("ADMIN")
+                .orElseGet(() -> roleRepository.save(Role.builder().name("ADMIN").build()));
+        admin = userRepository.save(User.builder()
+                .email("admin-" + suffix + "@test.com")
+                .passwordHash("x")
+                .fullName("Admin")
+                .enabled(true)
+                .roles(Set.of(adminRole))
+                .build());
+        tokenEpochRegistry.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void isFresh_BeforeFirstRefresh_ShouldBeFalse() {
+        TokenEpochRegistry registry = new TokenEpochRegistry(userRepository, context, REFRESH_MS);
+
+        assertFalse(registry.isFresh());
+    }
+
+    @Test
+    void isFresh_AfterRefresh_ShouldExpireAfterThreeIntervals() throws InterruptedException {
+        TokenEpochRegistry registry = new TokenEpochRegistry(userRepository, context, REFRESH_MS);
+
+        registry.refresh();
+        assertTrue(registry.isFresh());
+
+        Thread.sleep(REFRESH_MS * 3 + 50);
+        assertFalse(registry.isFresh());
+    }
+
+    @Test
+    void refresh_ShouldPickUpRevocationsMadeElsewhere() {
+        TokenEpochRegistry registry = new TokenEpochRegistry(userRepository, context, REFRESH_MS);
+        registry.refresh();
+        assertTrue(registry.isCurrent(user.getId(), 0));
+
+        tokenEpochRegistry.revoke(user.getId());
+        assertTrue(registry.isCurrent(user.getId(), 0));
+
+        registry.refresh();
+        assertFalse(registry.isCurrent(user.getId(), 0));
+        assertTrue(registry.isCurrent(user.getId(), 1));
+    }
+
+    @Test
+    void revoke_ShouldIncrementEpochAndRefreshSnapshot() {
+        tokenEpochRegistry.revoke(user.getId());
+
+        assertEquals(1, userRepository.findById(user.getId()).orElseThrow().getTokenEpoch());
+        assertFalse(tokenEpochRegistry.isCurrent(user.getId(), 0));
+        assertTrue(tokenEpochRegistry.isCurrent(user.getId(), 1));
+    }
+
+    @Test
+    void revokeEndpoint_Admin_ShouldReturnNoContent() throws Exception {
+        mockMvc.perform(post("/api/auth/users/" + user.getId() + "/revoke")
+                        .header("Authorization", "Bearer " + token(admin, 0, "ROLE_ADMIN")))
+                .andExpect(status().isNoContent());
+
+        assertEquals(1, userRepository.findById(user.getId()).orElseThrow().getTokenEpoch());
+    }
+
+    @Test
+    void revokeEndpoint_UnknownUser_ShouldReturnNotFound() throws Exception {
+        mockMvc.perform(post("/api/auth/users/" + Long.MAX_VALUE + "/revoke")
+                        .header("Authorization", "Bearer " + token(admin, 0, "ROLE_ADMIN")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void revokeEndpoint_User_ShouldBeForbidden() throws Exception {
+        mockMvc.perform(post("/api/auth/users/" + admin.getId() + "/revoke")
+                        .header("Authorization", "Bearer " + token(user, 0, "ROLE_USER")))
+                .andExpect(status().isForbidden());
+
+        assertEquals(0, userRepository.findById(admin.getId()).orElseThrow().getTokenEpoch());
+    }
+
+    @Test
+    void revokedToken_ShouldBeRejected() throws Exception {
+        String token = token(user, 0, "ROLE_USER");
+        mockMvc.perform(get("/api/cards").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/auth/users/" + user.getId() + "/revoke")
+                        .header("Authorization", "Bearer " + token(admin, 0, "ROLE_ADMIN")))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/cards").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/cards").header("Authorization", "Bearer " + token(user, 1, "ROLE_USER")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void filter_SelfContainedToken_ShouldAuthenticateFromClaims() throws Exception {
+        Authentication auth = authenticate(jwtAuthFilter, token(user, 0, "ROLE_USER"));
+
+        assertEquals(new JwtPrincipal(user.getId(), user.getEmail()), auth.getPrincipal());
+    }
+
+    @Test
+    void filter_TokenWithoutUserId_ShouldFallBackToDatabase() throws Exception {
+        String legacy = jwtService.generateToken(user.getEmail(), Map.of(JwtClaims.ROLES, List.of("ROLE_USER")));
+
+        Authentication auth = authenticate(jwtAuthFilter, legacy);
+
+        assertInstanceOf(BankUserDetails.class, auth.getPrincipal());
+        assertEquals(user.getId(), ((BankUserDetails) auth.getPrincipal()).getId());
+    }
+
+    @Test
+    void filter_StaleSnapshot_ShouldFallBackToDatabase() throws Exception {
+        TokenEpochRegistry stale = new TokenEpochRegistry(userRepository, context, REFRESH_MS);
+        JwtAuthFilter filter = new JwtAuthFilter(jwtService, userDetailsService, stale, true);
+
+        Authentication auth = authenticate(filter, token(user, 0, "ROLE_USER"));
+
+        assertInstanceOf(BankUserDetails.class, auth.getPrincipal());
+    }
+
+    @Test
+    void filter_StatelessDisabled_ShouldRejectRevokedTokenFromDatabase() throws Exception {
+        JwtAuthFilter filter = new JwtAuthFilter(jwtService, userDetailsService, tokenEpochRegistry, false);
+        String token = token(user, 0, "ROLE_USER");
+        assertInstanceOf(BankUserDetails.class, authenticate(filter, token).getPrincipal());
+        SecurityContextHolder.clearContext();
+
+        tokenEpochRegistry.revoke(user.getId());
+
+        assertNull(authenticate(filter, token));
+    }
+
+    private String token(User subject, int epoch, String role) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaims.USER_ID, subject.getId());
+        claims.put(JwtClaims.EPOCH, epoch);
+        claims.put(JwtClaims.ROLES, List.of(role));
+        return jwtService.generateToken(subject.getEmail(), claims);
+    }
+
+    private Authentication authenticate(JwtAuthFilter filter, String token) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
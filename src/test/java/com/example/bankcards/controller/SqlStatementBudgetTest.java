@@ -0,0 +1,173 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.config.SqlStatementCounter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.support.SqlStatementBudget;
+import com.example.bankcards.support.TestData;
+import com.example.bankcards.util.ETags;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Число SQL-операторов на запрос для основных эндпоинтов: страница из многих карт и переводов
+ * не должна давать запрос на каждую строку (N+1); проводки после снимков балансов
+ * суммируются одним запросом на страницу.
+ */
+@SpringBootTest(properties = "app.card-backfill.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlStatementBudgetTest {
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+    private static final int CARDS = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private SqlStatementCounter counter;
+
+    private String email;
+    private String token;
+    private List<Card> cards;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int n = USERS.incrementAndGet();
+        TestData data = new TestData(context);
+        User user = data.user("budget-" + n + "@test.com", data.passwordHash("password"), "Budget");
+        cards = data.cards(user, CARDS, 1_000_000L, i -> String.format("5%03d%012d", n, i));
+        data.transfers(user, cards, CARDS);
+
+        email = user.getEmail();
+        token = objectMapper.readTree(login(email)).path("token").asText();
+    }
+
+    /**
+     * Вход выполняется на пуле BCrypt; его операторы учитываются в запросе после асинхронного диспетчера.
+     */
+    @Test
+    void login_ShouldCountStatementsOfLoginPool() throws Exception {
+        List<SqlStatementCounter.Statements> requests = new CopyOnWriteArrayList<>();
+        Consumer<SqlStatementCounter.Statements> listener = requests::add;
+        counter.addListener(listener);
+        try {
+            login(email);
+        } finally {
+            counter.removeListener(listener);
+        }
+        assertEquals(1, requests.size());
+        assertEquals("POST /api/auth/login", requests.get(0).endpoint());
+        assertTrue(requests.get(0).count() > 0);
+    }
+
+    @Test
+    @SqlStatementBudget(3)
+    void listCards_ShouldNotQueryPerCard() throws Exception {
+        mockMvc.perform(authorized(get("/api/cards").param("size", "20"))).andExpect(status().isOk());
+    }
+
+    @Test
+    @SqlStatementBudget(2)
+    void listCardsByCursor_ShouldSumLedgerInOneQuery() throws Exception {
+        mockMvc.perform(authorized(get("/api/cards").param("limit", "20"))).andExpect(status().isOk());
+    }
+
+    @Test
+    @SqlStatementBudget(2)
+    void listCardsByCursor_WithCount_ShouldIgnoreCount() throws Exception {
+        mockMvc.perform(authorized(get("/api/cards").param("count", "NONE").param("limit", "20")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(CARDS));
+    }
+
+    @Test
+    @SqlStatementBudget(2)
+    void getCard_ShouldReadCardAndLedgerSum() throws Exception {
+        mockMvc.perform(authorized(get("/api/cards/" + cards.get(0).getId()))).andExpect(status().isOk());
+    }
+
+    @Test
+    @SqlStatementBudget(1)
+    void getCard_IfNoneMatch_ShouldAnswerFromVersionQuery() throws Exception {
+        Card card = cards.get(0);
+        String eTag = ETags.card(card.getVersion(), card.getBalanceMinor());
+        mockMvc.perform(authorized(get("/api/cards/" + card.getId())).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag));
+    }
+
+    @Test
+    @SqlStatementBudget(2)
+    void listCards_IfNoneMatch_ShouldAnswerFromVersionQueryAndCount() throws Exception {
+        List<String> entries = cards.stream()
+                .sorted(Comparator.comparing(Card::getId))
+                .map(c -> ETags.entry(c.getId(), c.getVersion(), c.getBalanceMinor()))
+                .toList();
+        String eTag = ETags.page(CARDS, entries);
+        mockMvc.perform(authorized(get("/api/cards").param("size", "20").param("sort", "id"))
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @SqlStatementBudget(2)
+    void listTransfers_ShouldNotLoadCardsPerTransfer() throws Exception {
+        mockMvc.perform(authorized(get("/api/transfers").param("size", "20"))).andExpect(status().isOk());
+    }
+
+    @Test
+    @SqlStatementBudget(7)
+    void createTransfer_ShouldLockCardsAndAppendEntries() throws Exception {
+        mockMvc.perform(authorized(post("/api/transfers"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromCardId\":" + cards.get(0).getId() + ",\"toCardId\":" + cards.get(1).getId()
+                                + ",\"amountMinor\":100}"))
+                .andExpect(status().isCreated());
+    }
+
+    private String login(String email) throws Exception {
+        MvcResult started = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\",\"password\":\"password\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+        return request.header("Authorization", "Bearer " + token);
+    }
+}
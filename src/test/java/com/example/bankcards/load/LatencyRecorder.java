@@ -0,0 +1,58 @@
+package com.example.bankcards.load;
+
+import com.example.bankcards.load.LoadProfile.Operation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задержки успешных ответов и число ошибок по операциям.
+ */
+final class LatencyRecorder {
+    private final Map<Operation, ConcurrentLinkedQueue<Long>> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    LatencyRecorder() {
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new ConcurrentLinkedQueue<>());
+            errors.put(op, new LongAdder());
+        }
+    }
+
+    void success(Operation op, long latencyNanos) {
+        latencies.get(op).add(latencyNanos);
+    }
+
+    void error(Operation op) {
+        errors.get(op).increment();
+    }
+
+    Summary summarize(Operation op, long elapsedNanos) {
+        long[] sorted = latencies.get(op).stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Summary(op.key, sorted.length, errors.get(op).sum(), sorted.length / (elapsedNanos / 1e9),
+                percentileMs(sorted, 50), percentileMs(sorted, 95), percentileMs(sorted, 99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentileMs(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Итог по операции: число успешных ответов, ошибок, пропускная способность (ответов в секунду) и задержки в мс.
+     */
+    record Summary(String operation, long count, long errors, double throughput,
+                   double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+
+        double errorRate() {
+            long total = count + errors;
+            return total == 0 ? 0 : (double) errors / total;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.load;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста из системных свойств -Dload.*.
+ * Объем данных: load.users, load.cardsPerUser, load.transfersPerUser.
+ * Нагрузка: load.rate запросов в секунду в течение load.duration секунд после load.warmup секунд прогрева,
+ * не более load.maxInFlight одновременных запросов.
+ * Смесь операций: load.mix.&lt;операция&gt; — вес, бюджет: load.budget.&lt;операция&gt;.p50|p95|p99 — мс,
+ * load.maxErrorRate — допустимая доля ошибок.
+ */
+record LoadProfile(int users,
+                   int cardsPerUser,
+                   int transfersPerUser,
+                   int ratePerSecond,
+                   Duration warmup,
+                   Duration duration,
+                   int maxInFlight,
+                   Map<Operation, Integer> mix,
+                   Map<Operation, Budget> budgets,
+                   double maxErrorRate) {
+
+    enum Operation {
+        LOGIN("login", 5, 2000),
+        CARD_LIST("cards", 40, 500),
+        CARD_GET("card", 35, 500),
+        TRANSFER_CREATE("transfer", 20, 500);
+
+        final String key;
+        final int defaultWeight;
+        final long defaultP99Ms;
+
+        Operation(String key, int defaultWeight, long defaultP99Ms) {
+            this.key = key;
+            this.defaultWeight = defaultWeight;
+            this.defaultP99Ms = defaultP99Ms;
+        }
+    }
+
+    /**
+     * Допустимые перцентили задержки в мс; null — без ограничения.
+     */
+    record Budget(Long p50Ms, Long p95Ms, Long p99Ms) {}
+
+    static LoadProfile fromSystemProperties() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        Map<Operation, Budget> budgets = new EnumMap<>(Operation.class);
+        for (Operation op : Operation.values()) {
+            mix.put(op, Integer.getInteger("load.mix." + op.key, op.defaultWeight));
+            budgets.put(op, new Budget(
+                    Long.getLong("load.budget." + op.key + ".p50"),
+                    Long.getLong("load.budget." + op.key + ".p95"),
+                    Long.getLong("load.budget." + op.key + ".p99", op.defaultP99Ms)));
+        }
+        return new LoadProfile(
+                Integer.getInteger("load.users", 50),
+                Integer.getInteger("load.cardsPerUser", 10),
+                Integer.getInteger("load.transfersPerUser", 100),
+                Integer.getInteger("load.rate", 50),
+                Duration.ofSeconds(Integer.getInteger("load.warmup", 5)),
+                Duration.ofSeconds(Integer.getInteger("load.duration", 30)),
+                Integer.getInteger("load.maxInFlight", 256),
+                mix,
+                budgets,
+                Double.parseDouble(System.getProperty("load.maxErrorRate", "0.01")));
+    }
+}
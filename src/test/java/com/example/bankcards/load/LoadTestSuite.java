@@ -0,0 +1,263 @@
+package com.example.bankcards.load;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.load.LatencyRecorder.Summary;
+import com.example.bankcards.load.LoadProfile.Budget;
+import com.example.bankcards.load.LoadProfile.Operation;
+import com.example.bankcards.support.TestData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сквозной нагрузочный тест по HTTP: приложение на H2 со сгенерированными данными,
+ * смесь операций (вход, список карт, карта, перевод) от многих виртуальных пользователей
+ * с фиксированной частотой поступления запросов (открытая модель). Задержка отсчитывается
+ * от запланированного момента отправки, поэтому очередь перед сервером тоже учитывается.
+ * Печатает p50/p95/p99 и пропускную способность по операциям, пишет их в target/load-test-results.json
+ * и падает при превышении бюджета задержек или доли ошибок. Параметры — см. {@link LoadProfile}.
+ * Запуск: mvn -Ploadtest test -Dload.rate=500 -Dload.budget.transfer.p99=100
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.card-backfill.enabled=false",
+        "logging.level.com.example.bankcards=INFO",
+        "logging.level.org.springframework.security=INFO",
+        "logging.level.org.springframework.web=INFO",
+        "logging.level.org.hibernate.SQL=WARN"
+})
+@ActiveProfiles("test")
+class LoadTestSuite {
+
+    private static final String PASSWORD = "password";
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final Path RESULTS = Path.of("target", "load-test-results.json");
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LoadProfile profile = LoadProfile.fromSystemProperties();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void mixedWorkload_ShouldStayWithinLatencyBudget() throws Exception {
+        List<VirtualUser> users = login(seed());
+
+        drive(users, profile.warmup(), new LatencyRecorder());
+        LatencyRecorder recorder = new LatencyRecorder();
+        long started = System.nanoTime();
+        drive(users, profile.duration(), recorder);
+        long elapsed = System.nanoTime() - started;
+
+        Map<Operation, Summary> summaries = new EnumMap<>(Operation.class);
+        for (Operation op : Operation.values()) {
+            if (profile.mix().get(op) > 0) {
+                summaries.put(op, recorder.summarize(op, elapsed));
+            }
+        }
+        report(summaries);
+        List<String> violations = violations(summaries);
+        assertTrue(violations.isEmpty(), "Load test budget exceeded:\n" + String.join("\n", violations));
+    }
+
+    /**
+     * Создает load.users пользователей с одинаковым паролем, по load.cardsPerUser карт и load.transfersPerUser переводов.
+     */
+    private List<SeededUser> seed() {
+        TestData data = new TestData(context);
+        String passwordHash = data.passwordHash(PASSWORD);
+        List<SeededUser> users = new ArrayList<>();
+        for (int u = 0; u < profile.users(); u++) {
+            int userNumber = u;
+            User user = data.user("load-" + u + "@test.com", passwordHash, "Load " + u);
+            List<Card> cards = data.cards(user, profile.cardsPerUser(), INITIAL_BALANCE,
+                    c -> String.format("4%05d%010d", userNumber, c));
+            data.transfers(user, cards, profile.transfersPerUser());
+            users.add(new SeededUser(user.getEmail(), cards.stream().map(Card::getId).toList()));
+        }
+        return users;
+    }
+
+    private List<VirtualUser> login(List<SeededUser> users) throws Exception {
+        List<CompletableFuture<VirtualUser>> logins = new ArrayList<>();
+        for (SeededUser user : users) {
+            logins.add(http.sendAsync(loginRequest(user.email()), HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> new VirtualUser(user.email(), token(response), user.cardIds())));
+        }
+        List<VirtualUser> result = new ArrayList<>();
+        for (CompletableFuture<VirtualUser> login : logins) {
+            result.add(login.get());
+        }
+        return result;
+    }
+
+    /**
+     * Отправляет запросы с частотой load.rate в течение duration, не дожидаясь ответов на предыдущие.
+     * Если одновременно выполняется load.maxInFlight запросов, отправка ждет, но задержка
+     * по-прежнему считается от запланированного момента.
+     */
+    private void drive(List<VirtualUser> users, Duration duration, LatencyRecorder recorder) throws InterruptedException {
+        double periodNanos = 1e9 / profile.ratePerSecond();
+        Semaphore inFlight = new Semaphore(profile.maxInFlight());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long scheduled = start + (long) (i * periodNanos);
+            if (scheduled >= end) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+            Operation op = pick(random);
+            VirtualUser user = users.get(random.nextInt(users.size()));
+            http.sendAsync(request(op, user, random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error == null && response.statusCode() == expectedStatus(op)) {
+                            recorder.success(op, System.nanoTime() - scheduled);
+                        } else {
+                            recorder.error(op);
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(profile.maxInFlight());
+        inFlight.release(profile.maxInFlight());
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int total = profile.mix().values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : profile.mix().entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    private HttpRequest request(Operation op, VirtualUser user, ThreadLocalRandom random) {
+        List<Long> cards = user.cardIds();
+        return switch (op) {
+            case LOGIN -> loginRequest(user.email());
+            case CARD_LIST -> authorized(user, "/api/cards?size=20").GET().build();
+            case CARD_GET -> authorized(user, "/api/cards/" + cards.get(random.nextInt(cards.size()))).GET().build();
+            case TRANSFER_CREATE -> {
+                int from = random.nextInt(cards.size());
+                int to = (from + 1 + random.nextInt(cards.size() - 1)) % cards.size();
+                yield authorized(user, "/api/transfers")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"fromCardId\":" + cards.get(from)
+                                + ",\"toCardId\":" + cards.get(to) + ",\"amountMinor\":1}"))
+                        .build();
+            }
+        };
+    }
+
+    private static int expectedStatus(Operation op) {
+        return op == Operation.TRANSFER_CREATE ? 201 : 200;
+    }
+
+    private HttpRequest loginRequest(String email) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"" + email + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(VirtualUser user, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + user.token());
+    }
+
+    private String token(HttpResponse<String> response) {
+        try {
+            return objectMapper.readTree(response.body()).path("token").asText();
+        } catch (Exception e) {
+            throw new IllegalStateException("Login failed: " + response.statusCode() + " " + response.body(), e);
+        }
+    }
+
+    private void report(Map<Operation, Summary> summaries) throws Exception {
+        System.out.printf("%n%d users x %d cards x %d transfers, %d req/s for %ds%n", profile.users(), profile.cardsPerUser(),
+                profile.transfersPerUser(), profile.ratePerSecond(), profile.duration().toSeconds());
+        System.out.printf("%-10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "ok", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Summary s : summaries.values()) {
+            System.out.printf("%-10s %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    s.operation(), s.count(), s.errors(), s.throughput(), s.p50Ms(), s.p95Ms(), s.p99Ms(), s.maxMs());
+        }
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("users", profile.users());
+        results.put("cardsPerUser", profile.cardsPerUser());
+        results.put("transfersPerUser", profile.transfersPerUser());
+        results.put("ratePerSecond", profile.ratePerSecond());
+        results.put("durationSeconds", profile.duration().toSeconds());
+        results.put("operations", summaries.values());
+        Files.createDirectories(RESULTS.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(RESULTS.toFile(), results);
+        System.out.println("Results written to " + RESULTS.toAbsolutePath());
+    }
+
+    private List<String> violations(Map<Operation, Summary> summaries) {
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<Operation, Summary> entry : summaries.entrySet()) {
+            Summary s = entry.getValue();
+            Budget budget = profile.budgets().get(entry.getKey());
+            check(violations, s.operation(), "p50", s.p50Ms(), budget.p50Ms());
+            check(violations, s.operation(), "p95", s.p95Ms(), budget.p95Ms());
+            check(violations, s.operation(), "p99", s.p99Ms(), budget.p99Ms());
+            if (s.errorRate() > profile.maxErrorRate()) {
+                violations.add(String.format("%s: error rate %.3f > %.3f", s.operation(), s.errorRate(), profile.maxErrorRate()));
+            }
+        }
+        return violations;
+    }
+
+    private static void check(List<String> violations, String operation, String percentile, double actualMs, Long budgetMs) {
+        if (budgetMs != null && actualMs > budgetMs) {
+            violations.add(String.format("%s: %s %.1f ms > %d ms", operation, percentile, actualMs, budgetMs));
+        }
+    }
+
+    private record SeededUser(String email, List<Long> cardIds) {}
+
+    private record VirtualUser(String email, String token, List<Long> cardIds) {}
+}
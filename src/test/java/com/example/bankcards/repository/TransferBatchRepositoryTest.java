@@ -0,0 +1,126 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.TransferBatchRepository.LockedCard;
+import com.example.bankcards.repository.TransferBatchRepository.NewTransfer;
+import com.example.bankcards.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JDBC-пути пакетного перевода на реальной базе: блокировка карт с балансом из журнала
+ * и пакетная вставка строк с id из тех же блоков последовательности, что и у JPA.
+ */
+@SpringBootTest(properties = "app.card-backfill.enabled=false")
+@ActiveProfiles("test")
+class TransferBatchRepositoryTest {
+
+    private static final AtomicInteger USERS = new AtomicInteger();
+    private static final long BALANCE = 10_000L;
+
+    @Autowired
+    private TransferBatchRepository transferBatchRepository;
+    @Autowired
+    private TransferRepository transferRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationContext context;
+
+    private User user;
+    private List<Card> cards;
+    private Card foreignCard;
+
+    @BeforeEach
+    void setUp() {
+        int n = USERS.incrementAndGet();
+        TestData data = new TestData(context);
+        user = data.user("batch-" + n + "@test.com", "x", "Batch");
+        cards = data.cards(user, 2, BALANCE, i -> String.format("6%03d%012d", n, i));
+        User other = data.user("batch-other-" + n + "@test.com", "x", "Other");
+        foreignCard = data.cards(other, 1, BALANCE, i -> String.format("7%03d%012d", n, i)).get(0);
+    }
+
+    @Test
+    void lockCards_ShouldReturnOnlyOwnCards() {
+        Map<Long, LockedCard> locked = transactionTemplate.execute(status -> transferBatchRepository.lockCards(
+                user.getId(), List.of(cards.get(0).getId(), cards.get(1).getId(), foreignCard.getId(), Long.MAX_VALUE)));
+
+        assertEquals(Set.of(cards.get(0).getId(), cards.get(1).getId()), locked.keySet());
+        assertEquals(new LockedCard(cards.get(0).getId(), CardStatus.ACTIVE, BALANCE), locked.get(cards.get(0).getId()));
+    }
+
+    @Test
+    void insertTransfers_ShouldWriteRowsWithDistinctIds() {
+        List<NewTransfer> transfers = transfers(120, 10L);
+
+        List<Long> ids = transactionTemplate.execute(status ->
+                transferBatchRepository.insertTransfers(user.getId(), transfers, OffsetDateTime.now()));
+
+        assertEquals(120, ids.size());
+        assertEquals(120, new HashSet<>(ids).size());
+        assertEquals(120, jdbcTemplate.queryForObject(
+                "select count(*) from transfers where user_id = ?", Integer.class, user.getId()));
+    }
+
+    @Test
+    void insertTransfers_InterleavedWithJpa_ShouldNotReuseIds() {
+        List<Long> ids = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            ids.addAll(transferBatchRepository.insertTransfers(user.getId(), transfers(30, 10L), OffsetDateTime.now()));
+            ids.add(transferRepository.saveAndFlush(Transfer.builder()
+                    .user(user).fromCard(cards.get(0)).toCard(cards.get(1)).amountMinor(10L).build()).getId());
+            ids.addAll(transferBatchRepository.insertTransfers(user.getId(), transfers(60, 10L), OffsetDateTime.now()));
+        });
+
+        assertEquals(91, new HashSet<>(ids).size());
+    }
+
+    @Test
+    void insertLedgerEntries_ShouldMoveBalancesSeenByLockCards() {
+        List<NewTransfer> transfers = transfers(3, 100L);
+
+        Map<Long, LockedCard> locked = transactionTemplate.execute(status -> {
+            List<Long> ids = transferBatchRepository.insertTransfers(user.getId(), transfers, OffsetDateTime.now());
+            transferBatchRepository.insertLedgerEntries(ids, transfers);
+            return transferBatchRepository.lockCards(user.getId(), List.of(cards.get(0).getId(), cards.get(1).getId()));
+        });
+
+        assertEquals(BALANCE - 300, locked.get(cards.get(0).getId()).balanceMinor());
+        assertEquals(BALANCE + 300, locked.get(cards.get(1).getId()).balanceMinor());
+        List<Long> entryIds = jdbcTemplate.queryForList(
+                "select e.id from ledger_entries e join transfers t on t.id = e.transfer_id where t.user_id = ?",
+                Long.class, user.getId());
+        assertEquals(6, entryIds.size());
+        assertEquals(6, new HashSet<>(entryIds).size());
+    }
+
+    private List<NewTransfer> transfers(int count, long amount) {
+        List<NewTransfer> transfers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transfers.add(new NewTransfer(cards.get(0).getId(), cards.get(1).getId(), amount));
+        }
+        return transfers;
+    }
+}
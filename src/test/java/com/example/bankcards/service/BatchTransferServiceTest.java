@@ -0,0 +1,136 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BatchMode;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BatchTransferResult;
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.TransferBatchRepository;
+import com.example.bankcards.repository.TransferBatchRepository.LockedCard;
+import com.example.bankcards.repository.TransferBatchRepository.NewTransfer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchTransferServiceTest {
+
+    @Mock
+    private TransferBatchRepository transferBatchRepository;
+
+    @Mock
+    private CurrentUserResolver currentUserResolver;
+
+    @Mock
+    private TransferSummaryService transferSummaryService;
+
+    @Mock
+    private Authentication authentication;
+
+    @InjectMocks
+    private BatchTransferService batchTransferService;
+
+    @BeforeEach
+    void setUp() {
+        when(currentUserResolver.resolve(authentication)).thenReturn(new UserRef(1L, "user@test.com", Set.of("ROLE_USER")));
+    }
+
+    @Test
+    void createBatch_AllValid_ShouldInsertTransfersAndEntriesInOneBatch() {
+        when(transferBatchRepository.lockCards(eq(1L), anyCollection())).thenReturn(Map.of(
+                1L, new LockedCard(1L, CardStatus.ACTIVE, 1000L),
+                2L, new LockedCard(2L, CardStatus.ACTIVE, 0L),
+                3L, new LockedCard(3L, CardStatus.ACTIVE, 0L)));
+        when(transferBatchRepository.insertTransfers(eq(1L), anyList(), any())).thenReturn(List.of(10L, 11L, 12L));
+
+        BatchTransferResponse response = batchTransferService.createBatch(authentication, new BatchTransferRequest(
+                BatchMode.ALL_OR_NOTHING,
+                List.of(new CreateTransferRequest(1L, 2L, 600L),
+                        new CreateTransferRequest(2L, 3L, 500L),
+                        new CreateTransferRequest(1L, 3L, 400L))));
+
+        assertEquals(3, response.created());
+        assertEquals(0, response.rejected());
+        assertEquals(List.of(10L, 11L, 12L), response.results().stream().map(BatchTransferResult::transferId).toList());
+        List<NewTransfer> inserted = List.of(
+                new NewTransfer(1L, 2L, 600L), new NewTransfer(2L, 3L, 500L), new NewTransfer(1L, 3L, 400L));
+        verify(transferBatchRepository).insertTransfers(eq(1L), eq(inserted), any());
+        verify(transferSummaryService).record(eq(1L), any(), eq(List.of(
+                new TransferSummaryService.Movement(1L, 2L, 600L),
+                new TransferSummaryService.Movement(2L, 3L, 500L),
+                new TransferSummaryService.Movement(1L, 3L, 400L))));
+        verify(transferBatchRepository).insertLedgerEntries(List.of(10L, 11L, 12L), inserted);
+    }
+
+    @Test
+    void createBatch_AllOrNothingWithInsufficientFunds_ShouldWriteNothing() {
+        when(transferBatchRepository.lockCards(eq(1L), anyCollection())).thenReturn(Map.of(
+                1L, new LockedCard(1L, CardStatus.ACTIVE, 500L),
+                2L, new LockedCard(2L, CardStatus.ACTIVE, 0L)));
+
+        BatchTransferResponse response = batchTransferService.createBatch(authentication, new BatchTransferRequest(
+                BatchMode.ALL_OR_NOTHING,
+                List.of(new CreateTransferRequest(1L, 2L, 300L),
+                        new CreateTransferRequest(1L, 2L, 300L))));
+
+        assertEquals(0, response.created());
+        assertEquals(BatchTransferResult.Status.SKIPPED, response.results().get(0).status());
+        assertEquals(BatchTransferResult.Status.REJECTED, response.results().get(1).status());
+        assertEquals("Insufficient funds", response.results().get(1).error());
+        verify(transferBatchRepository, never()).insertTransfers(any(), any(), any());
+        verifyNoInteractions(transferSummaryService);
+        verify(transferBatchRepository, never()).insertLedgerEntries(any(), any());
+    }
+
+    @Test
+    void createBatch_BestEffort_ShouldApplyOnlyValidItems() {
+        when(transferBatchRepository.lockCards(eq(1L), anyCollection())).thenReturn(Map.of(
+                1L, new LockedCard(1L, CardStatus.ACTIVE, 500L),
+                2L, new LockedCard(2L, CardStatus.BLOCKED, 0L),
+                3L, new LockedCard(3L, CardStatus.ACTIVE, 0L)));
+        when(transferBatchRepository.insertTransfers(eq(1L), anyList(), any())).thenReturn(List.of(20L));
+
+        BatchTransferResponse response = batchTransferService.createBatch(authentication, new BatchTransferRequest(
+                BatchMode.BEST_EFFORT,
+                List.of(new CreateTransferRequest(1L, 2L, 100L),
+                        new CreateTransferRequest(1L, 99L, 100L),
+                        new CreateTransferRequest(1L, 3L, 100L))));
+
+        assertEquals(1, response.created());
+        assertEquals(2, response.rejected());
+        assertEquals("Both cards must be active", response.results().get(0).error());
+        assertEquals("To card not found", response.results().get(1).error());
+        assertEquals(BatchTransferResult.created(2, 20L), response.results().get(2));
+        verify(transferBatchRepository).insertLedgerEntries(List.of(20L), List.of(new NewTransfer(1L, 3L, 100L)));
+    }
+
+    @Test
+    void createBatch_OppositeTransfersCancelOut_ShouldStillRecordBothTransfers() {
+        when(transferBatchRepository.lockCards(eq(1L), anyCollection())).thenReturn(Map.of(
+                1L, new LockedCard(1L, CardStatus.ACTIVE, 100L),
+                2L, new LockedCard(2L, CardStatus.ACTIVE, 0L)));
+        when(transferBatchRepository.insertTransfers(eq(1L), anyList(), any())).thenReturn(List.of(30L, 31L));
+
+        BatchTransferResponse response = batchTransferService.createBatch(authentication, new BatchTransferRequest(
+                BatchMode.ALL_OR_NOTHING,
+                List.of(new CreateTransferRequest(1L, 2L, 100L),
+                        new CreateTransferRequest(2L, 1L, 100L))));
+
+        assertEquals(2, response.created());
+        verify(transferBatchRepository).insertLedgerEntries(List.of(30L, 31L),
+                List.of(new NewTransfer(1L, 2L, 100L), new NewTransfer(2L, 1L, 100L)));
+    }
+}
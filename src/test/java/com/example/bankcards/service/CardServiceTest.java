@@ -2,14 +2,23 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CreateCardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CountMode;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.ETagged;
+import com.example.bankcards.dto.SlicePage;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.exception.ConflictException;
 import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.exception.PreconditionFailedException;
+import com.example.bankcards.repository.CardCountEstimator;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.CardVersionView;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndex;
 import com.example.bankcards.util.CryptoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,16 +26,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -44,15 +57,31 @@ class CardServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CurrentUserResolver currentUserResolver;
+
     @Mock
     private CryptoService cryptoService;
 
+    @Mock
+    private CardCountEstimator cardCountEstimator;
+
+    @Mock
+    private BlindIndex blindIndex;
+
+    @Mock
+    private CardNumberRegistry cardNumberRegistry;
+
+    @Mock
+    private LedgerService ledgerService;
+
     private Authentication authentication;
 
     @InjectMocks
     private CardService cardService;
 
     private User testUser;
+    private UserRef testUserRef;
     private Card testCard;
     private CreateCardRequest createCardRequest;
 
@@ -66,16 +95,18 @@ class CardServiceTest {
                 .enabled(true)
                 .roles(Set.of(Role.builder().id(1L).name("ROLE_USER").build()))
                 .build();
+        testUserRef = new UserRef(1L, "user@test.com", Set.of("ROLE_USER"));
 
         testCard = Card.builder()
                 .id(1L)
                 .user(testUser)
-                .cardNumberEncrypted("encryptedNumber")
-                .cardNumberIv("iv")
+                .cardNumberCiphertext(new byte[] {1, 2, 3})
+                .cardLast4("3456")
                 .ownerName("Test Owner")
                 .expiration(LocalDate.now().plusYears(2))
                 .status(CardStatus.ACTIVE)
                 .balanceMinor(10000L)
+                .version(3L)
                 .build();
 
         createCardRequest = new CreateCardRequest(
@@ -105,33 +136,148 @@ class CardServiceTest {
         Authentication adminAuth = createAdminAuth();
         when(cardRepository.findAll(any(Pageable.class)))
                 .thenReturn(new PageImpl<>(List.of(testCard)));
-        when(cryptoService.decrypt("encryptedNumber", "iv")).thenReturn("1234567890123456");
 
         Pageable pageable = PageRequest.of(0, 10);
 
-        Page<CardResponse> result = cardService.listCards(adminAuth, null, pageable);
+        Page<CardResponse> result = cardService.listCards(adminAuth, null, pageable).body();
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
+        assertEquals("**** **** **** 3456", result.getContent().get(0).maskedNumber());
         verify(cardRepository).findAll(pageable);
-        verify(cryptoService).decrypt("encryptedNumber", "iv");
+        verifyNoInteractions(cryptoService);
     }
 
+    @Test
+    void listCards_CardWithoutLast4_ShouldFallBackToDecrypt() {
+        Authentication adminAuth = createAdminAuth();
+        testCard.setCardLast4(null);
+        when(cardRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(testCard)));
+        when(cryptoService.decryptAll(List.of(testCard))).thenReturn(List.of("1234567890123456"));
+
+        Page<CardResponse> result = cardService.listCards(adminAuth, null, PageRequest.of(0, 10)).body();
+
+        assertEquals("**** **** **** 3456", result.getContent().get(0).maskedNumber());
+        verify(cryptoService).decryptAll(List.of(testCard));
+    }
+
+    @Test
+    void listCardsSlice_AsAdminWithoutCount_ShouldNotCountOrEstimate() {
+        Authentication adminAuth = createAdminAuth();
+        Pageable pageable = PageRequest.of(0, 1);
+        when(cardRepository.findSliceByStatus(CardStatus.ACTIVE, pageable))
+                .thenReturn(new SliceImpl<>(List.of(testCard), pageable, true));
+
+        SlicePage<CardResponse> result = cardService.listCardsSlice(adminAuth, CardStatus.ACTIVE, CountMode.NONE, pageable);
+
+        assertEquals(1, result.content().size());
+        assertTrue(result.hasNext());
+        assertNull(result.approximateTotal());
+        verify(cardRepository, never()).findByStatus(any(), any(Pageable.class));
+        verifyNoInteractions(cardCountEstimator);
+    }
+
+    @Test
+    void listCardsSlice_Approximate_ShouldReturnEstimateForOwnCards() {
+        Pageable pageable = PageRequest.of(0, 10);
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findSliceByUserId(1L, pageable)).thenReturn(new SliceImpl<>(List.of(testCard), pageable, false));
+        when(cardCountEstimator.estimate(1L, null)).thenReturn(1L);
+
+        SlicePage<CardResponse> result = cardService.listCardsSlice(authentication, null, CountMode.APPROXIMATE, pageable);
+
+        assertFalse(result.hasNext());
+        assertEquals(1L, result.approximateTotal());
+    }
+
+    @Test
+    void listCardsAfter_MoreThanLimit_ShouldReturnNextCursor() {
+        Card second = Card.builder().id(2L).user(testUser).cardLast4("0002").status(CardStatus.ACTIVE).balanceMinor(0L).build();
+        Card third = Card.builder().id(3L).user(testUser).cardLast4("0003").status(CardStatus.ACTIVE).balanceMinor(0L).build();
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findByUserIdAfter(1L, 0L, Limit.of(3))).thenReturn(List.of(testCard, second, third));
+
+        CursorPage<CardResponse> page = cardService.listCardsAfter(authentication, null, null, 2);
+
+        assertEquals(List.of(1L, 2L), page.items().stream().map(CardResponse::id).toList());
+        assertNotNull(page.nextCursor());
+
+        when(cardRepository.findByUserIdAfter(1L, 2L, Limit.of(3))).thenReturn(List.of(third));
+        CursorPage<CardResponse> next = cardService.listCardsAfter(authentication, null, page.nextCursor(), 2);
+
+        assertEquals(List.of(3L), next.items().stream().map(CardResponse::id).toList());
+        assertNull(next.nextCursor());
+        verify(cardRepository, never()).findByUserId(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void createCard_NumberNotInBloomFilter_ShouldSaveWithoutLookup() {
+        byte[] hmac = {1, 2, 3};
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(blindIndex.of("1234567890123456")).thenReturn(hmac);
+        when(cardNumberRegistry.mightExist(hmac)).thenReturn(false);
+        when(cryptoService.encrypt("1234567890123456")).thenReturn(new byte[] {9});
+        when(cardRepository.saveAndFlush(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        CardResponse result = cardService.createCard(authentication, createCardRequest);
+
+        assertEquals("**** **** **** 3456", result.maskedNumber());
+        verify(cardRepository, never()).existsByCardNumberHmac(any());
+        verify(cardRepository).saveAndFlush(argThat(card -> card.getCardNumberHmac() == hmac));
+        verify(cardNumberRegistry).add(hmac);
+    }
+
+    @Test
+    void createCard_DuplicateNumber_ShouldThrowConflictException() {
+        byte[] hmac = {1, 2, 3};
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(blindIndex.of("1234567890123456")).thenReturn(hmac);
+        when(cardNumberRegistry.mightExist(hmac)).thenReturn(true);
+        when(cardRepository.existsByCardNumberHmac(hmac)).thenReturn(true);
+
+        assertThrows(ConflictException.class, () -> cardService.createCard(authentication, createCardRequest));
+        verify(cardRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void findByNumber_AsAdmin_ShouldLookUpByBlindIndex() {
+        byte[] hmac = {1, 2, 3};
+        when(blindIndex.of("1234567890123456")).thenReturn(hmac);
+        when(cardRepository.findByCardNumberHmac(hmac)).thenReturn(Optional.of(testCard));
+
+        CardResponse result = cardService.findByNumber(createAdminAuth(), "1234567890123456");
+
+        assertEquals(1L, result.id());
+        verifyNoInteractions(cryptoService);
+    }
+
+    @Test
+    void findByNumber_AsUser_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> cardService.findByNumber(authentication, "1234567890123456"));
+        verifyNoInteractions(blindIndex);
+    }
+
+    @Test
+    void listCardsAfter_InvalidCursor_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () ->
+                cardService.listCardsAfter(authentication, null, "not-a-cursor", 10));
+    }
 
     @Test
     void get_AsUser_ShouldReturnOwnCard() {
         // Given
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
         when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(cryptoService.decrypt("encryptedNumber", "iv")).thenReturn("1234567890123456");
 
-        CardResponse result = cardService.get(authentication, 1L);
+        CardResponse result = cardService.get(authentication, 1L).body();
 
         assertNotNull(result);
         assertEquals(1L, result.id());
         assertEquals("Test Owner", result.ownerName());
+        assertEquals("**** **** **** 3456", result.maskedNumber());
         verify(cardRepository).findById(1L);
-        verify(cryptoService).decrypt("encryptedNumber", "iv");
+        verifyNoInteractions(cryptoService);
     }
 
     @Test
@@ -147,7 +293,7 @@ class CardServiceTest {
         User otherUser = User.builder().id(999L).email("other@test.com").build();
         Card otherCard = Card.builder().id(2L).user(otherUser).build();
 
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
         when(cardRepository.findById(2L)).thenReturn(Optional.of(otherCard));
 
         assertThrows(NotFoundException.class, () -> cardService.get(authentication, 2L));
@@ -155,39 +301,107 @@ class CardServiceTest {
 
     @Test
     void changeStatus_AsUser_ToBlocked_ShouldSucceed() {
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
         when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(cardRepository.save(any(Card.class))).thenReturn(testCard);
-        when(cryptoService.decrypt("encryptedNumber", "iv")).thenReturn("1234567890123456");
+        when(cardRepository.saveAndFlush(any(Card.class))).thenReturn(testCard);
 
-        CardResponse result = cardService.changeStatus(authentication, 1L, CardStatus.BLOCKED);
+        CardResponse result = cardService.changeStatus(authentication, 1L, CardStatus.BLOCKED, null).body();
 
         assertNotNull(result);
         assertEquals(CardStatus.BLOCKED, testCard.getStatus());
-        verify(cardRepository).save(testCard);
+        verify(cardRepository).saveAndFlush(testCard);
     }
 
     @Test
     void changeStatus_AsUser_ToActive_ShouldThrowBadRequestException() {
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
         when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
 
         assertThrows(BadRequestException.class, () -> 
-                cardService.changeStatus(authentication, 1L, CardStatus.ACTIVE));
+                cardService.changeStatus(authentication, 1L, CardStatus.ACTIVE, null));
     }
 
     @Test
     void changeStatus_AsAdmin_ShouldSucceed() {
         Authentication adminAuth = createAdminAuth();
         when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(cardRepository.save(any(Card.class))).thenReturn(testCard);
-        when(cryptoService.decrypt("encryptedNumber", "iv")).thenReturn("1234567890123456");
+        when(cardRepository.saveAndFlush(any(Card.class))).thenReturn(testCard);
 
-        CardResponse result = cardService.changeStatus(adminAuth, 1L, CardStatus.ACTIVE);
+        CardResponse result = cardService.changeStatus(adminAuth, 1L, CardStatus.ACTIVE, null).body();
 
         assertNotNull(result);
         assertEquals(CardStatus.ACTIVE, testCard.getStatus());
-        verify(cardRepository).save(testCard);
+        verify(cardRepository).saveAndFlush(testCard);
+    }
+
+    @Test
+    void changeStatus_MatchingIfMatch_ShouldSucceed() {
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(cardRepository.saveAndFlush(any(Card.class))).thenReturn(testCard);
+
+        ETagged<CardResponse> result = cardService.changeStatus(authentication, 1L, CardStatus.BLOCKED, "\"3-500\"");
+
+        assertEquals(CardStatus.BLOCKED, testCard.getStatus());
+        assertEquals("\"3-10000\"", result.eTag());
+    }
+
+    @Test
+    void changeStatus_StaleIfMatch_ShouldThrowPreconditionFailedException() {
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+
+        assertThrows(PreconditionFailedException.class, () ->
+                cardService.changeStatus(authentication, 1L, CardStatus.BLOCKED, "\"2-10000\""));
+        assertEquals(CardStatus.ACTIVE, testCard.getStatus());
+        verify(cardRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void changeStatus_ConcurrentUpdate_ShouldThrowPreconditionFailedException() {
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(cardRepository.saveAndFlush(any(Card.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L));
+
+        assertThrows(PreconditionFailedException.class, () ->
+                cardService.changeStatus(authentication, 1L, CardStatus.BLOCKED, "\"3-10000\""));
+    }
+
+    @Test
+    void eTag_ShouldUseVersionQueryWithoutLoadingCard() {
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findVersionById(1L)).thenReturn(Optional.of(versionView(1L, 3L, 10000L)));
+
+        assertEquals("\"3-10000\"", cardService.eTag(authentication, 1L));
+        verify(cardRepository, never()).findById(any());
+        verifyNoInteractions(cryptoService, ledgerService);
+    }
+
+    @Test
+    void listCardsETag_ShouldMatchTagOfLoadedPage() {
+        Authentication adminAuth = createAdminAuth();
+        Pageable pageable = PageRequest.of(0, 10);
+        when(cardRepository.findAll(pageable)).thenReturn(new PageImpl<>(List.of(testCard), pageable, 1));
+        when(ledgerService.amountsSinceSnapshot(List.of(testCard))).thenReturn(Map.of(1L, -250L));
+        when(cardRepository.findVersionsBy(pageable))
+                .thenReturn(new PageImpl<>(List.of(versionView(1L, 3L, 9750L)), pageable, 1));
+
+        String loaded = cardService.listCards(adminAuth, null, pageable).eTag();
+
+        assertEquals(loaded, cardService.listCardsETag(adminAuth, null, pageable));
+        when(cardRepository.findVersionsBy(pageable))
+                .thenReturn(new PageImpl<>(List.of(versionView(1L, 4L, 9750L)), pageable, 1));
+        assertNotEquals(loaded, cardService.listCardsETag(adminAuth, null, pageable));
+    }
+
+    private static CardVersionView versionView(Long id, Long version, Long balanceMinor) {
+        return new CardVersionView() {
+            public Long getId() { return id; }
+            public Long getUserId() { return 1L; }
+            public Long getVersion() { return version; }
+            public Long getBalanceMinor() { return balanceMinor; }
+        };
     }
 
     @Test
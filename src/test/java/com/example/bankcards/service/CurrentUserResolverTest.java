@@ -0,0 +1,102 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.config.JwtPrincipal;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.UserChangedEvent;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CurrentUserResolverTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CurrentUserResolver resolver;
+
+    private User testUser;
+    private Authentication authentication;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        resolver = new CurrentUserResolver(userRepository, 100, Duration.ofMinutes(10),
+                new EndpointObservations(ObservationRegistry.NOOP), meterRegistry);
+        testUser = User.builder()
+                .id(1L)
+                .email("user@test.com")
+                .roles(Set.of(Role.builder().id(1L).name("USER").build()))
+                .build();
+        authentication = new UsernamePasswordAuthenticationToken(
+                "user@test.com", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @Test
+    void resolve_JwtPrincipal_ShouldNotQueryDatabase() {
+        Authentication jwtAuth = new UsernamePasswordAuthenticationToken(
+                new JwtPrincipal(7L, "jwt@test.com"), null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+
+        UserRef user = resolver.resolve(jwtAuth);
+
+        assertEquals(7L, user.id());
+        assertTrue(user.isAdmin());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void resolve_SameEmailTwice_ShouldQueryDatabaseOnce() {
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
+
+        UserRef first = resolver.resolve(authentication);
+        UserRef second = resolver.resolve(authentication);
+
+        assertEquals(first, second);
+        assertEquals(Set.of("ROLE_USER"), first.roles());
+        verify(userRepository, times(1)).findByEmail("user@test.com");
+        assertEquals(1, cacheGets("hit"));
+        assertEquals(1, cacheGets("miss"));
+    }
+
+    @Test
+    void resolve_AfterUserChanged_ShouldReload() {
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
+
+        resolver.resolve(authentication);
+        resolver.onUserChanged(new UserChangedEvent(1L, "user@test.com"));
+        resolver.resolve(authentication);
+
+        verify(userRepository, times(2)).findByEmail("user@test.com");
+    }
+
+    @Test
+    void resolve_UnknownUser_ShouldThrowNotFoundException() {
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> resolver.resolve(authentication));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "users.by-email").tag("result", result).functionCounter().count();
+    }
+}
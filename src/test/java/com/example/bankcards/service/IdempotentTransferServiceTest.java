@@ -0,0 +1,161 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.dto.TransferResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.exception.UnprocessableEntityException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.TransferRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotentTransferServiceTest {
+
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private CurrentUserResolver currentUserResolver;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Authentication authentication;
+
+    private IdempotentTransferService service;
+
+    /** SHA-256 от "1:2:10000" — отпечаток {@link #request}. */
+    private static final String REQUEST_HASH = sha256("1:2:10000");
+
+    private final CreateTransferRequest request = new CreateTransferRequest(1L, 2L, 10000L);
+    private final TransferResponse transfer = response(5L);
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotentTransferService(transferService, transferRepository, idempotencyKeyRepository,
+                currentUserResolver, transactionManager, 100, Duration.ofMinutes(10), Duration.ofSeconds(5), Duration.ofDays(1));
+        lenient().when(currentUserResolver.resolve(authentication)).thenReturn(new UserRef(1L, "user@test.com", Set.of("ROLE_USER")));
+    }
+
+    @Test
+    void create_RepeatedKey_ShouldReturnOriginalTransferFromMemory() {
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "k1")).thenReturn(Optional.empty());
+        when(transferService.create(authentication, request)).thenReturn(transfer);
+
+        TransferResponse first = service.create(authentication, "k1", request);
+        TransferResponse second = service.create(authentication, "k1", request);
+
+        assertSame(first, second);
+        verify(transferService, times(1)).create(authentication, request);
+        verify(idempotencyKeyRepository, times(1)).findByUserIdAndKey(1L, "k1");
+        verify(idempotencyKeyRepository).saveAndFlush(argThat(k -> k.getTransferId().equals(5L) && k.getKey().equals("k1")));
+    }
+
+    @Test
+    void create_SameKeyDifferentRequest_ShouldThrowUnprocessableEntityException() {
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "k1")).thenReturn(Optional.empty());
+        when(transferService.create(authentication, request)).thenReturn(transfer);
+        service.create(authentication, "k1", request);
+
+        CreateTransferRequest other = new CreateTransferRequest(1L, 2L, 1L);
+
+        assertThrows(UnprocessableEntityException.class, () -> service.create(authentication, "k1", other));
+    }
+
+    @Test
+    void create_KeyStoredInDatabase_ShouldReturnStoredTransferWithoutCreating() {
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "k2")).thenReturn(Optional.of(
+                IdempotencyKey.builder().userId(1L).key("k2").requestHash(REQUEST_HASH).transferId(5L).build()));
+        when(transferRepository.findResponseById(5L)).thenReturn(Optional.of(transfer));
+
+        TransferResponse result = service.create(authentication, "k2", request);
+
+        assertSame(transfer, result);
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    void create_ConcurrentDuplicate_ShouldWaitForFirstResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "k3")).thenReturn(Optional.empty());
+        when(transferService.create(authentication, request)).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return transfer;
+        });
+
+        CompletableFuture<TransferResponse> first = CompletableFuture.supplyAsync(() -> service.create(authentication, "k3", request));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<TransferResponse> duplicate = CompletableFuture.supplyAsync(() -> service.create(authentication, "k3", request));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+        release.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+        verify(transferService, times(1)).create(authentication, request);
+    }
+
+    @Test
+    void create_KeyInsertedByAnotherInstance_ShouldReturnTheirTransfer() {
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "k4"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(IdempotencyKey.builder().userId(1L).key("k4").requestHash(REQUEST_HASH).transferId(5L).build()));
+        when(transferService.create(authentication, request)).thenReturn(response(6L));
+        when(idempotencyKeyRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(transferRepository.findResponseById(5L)).thenReturn(Optional.of(transfer));
+
+        TransferResponse result = service.create(authentication, "k4", request);
+
+        assertEquals(5L, result.id());
+    }
+
+    @Test
+    void create_BlankKey_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> service.create(authentication, " ", request));
+        verifyNoInteractions(transferService);
+    }
+
+    private static TransferResponse response(Long id) {
+        return new TransferResponse(id, 1L, "****", 2L, "****", 10000L, OffsetDateTime.parse("2025-01-02T10:15:30Z"));
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.JwtPrincipal;
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Балансы из журнала проводок: перевод пишет две проводки, снимок переносит их в строку карты
+ * и историю, баланс на момент в прошлом считается от ближайшего снимка.
+ */
+@SpringBootTest(properties = {"app.card-backfill.enabled=false", "app.ledger.snapshot-enabled=false"})
+@ActiveProfiles("test")
+class LedgerBalanceTest {
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private CardService cardService;
+    @Autowired
+    private LedgerSnapshotJob snapshotJob;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    private Authentication auth;
+    private Card from;
+    private Card to;
+
+    @BeforeEach
+    void setUp() {
+        String email = "ledger-" + UUID.randomUUID() + "@test.com";
+        User user = userRepository.save(User.builder().email(email).passwordHash("x").fullName("Ledger").enabled(true).build());
+        auth = new UsernamePasswordAuthenticationToken(new JwtPrincipal(user.getId(), email), null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        from = cardRepository.save(card(user, 1000L));
+        to = cardRepository.save(card(user, 0L));
+    }
+
+    @Test
+    void transfer_ShouldAppendEntriesWithoutUpdatingCards() {
+        transferService.create(auth, new CreateTransferRequest(from.getId(), to.getId(), 300L));
+
+        assertEquals(1000L, cardRepository.findById(from.getId()).orElseThrow().getBalanceMinor());
+        assertEquals(-300L, ledgerEntryRepository.sumAfter(from.getId(), Card.BALANCE_ORIGIN));
+        assertEquals(700L, balance(from, null));
+        assertEquals(300L, balance(to, null));
+    }
+
+    @Test
+    void snapshot_ShouldKeepCurrentAndPastBalances() {
+        OffsetDateTime beforeTransfers = OffsetDateTime.now();
+        transferService.create(auth, new CreateTransferRequest(from.getId(), to.getId(), 300L));
+        OffsetDateTime afterFirst = OffsetDateTime.now();
+
+        assertTrue(snapshotJob.snapshot(afterFirst) >= 2);
+
+        Card rolled = cardRepository.findById(from.getId()).orElseThrow();
+        assertEquals(700L, rolled.getBalanceMinor());
+        assertEquals(afterFirst.truncatedTo(ChronoUnit.MICROS).toInstant(), rolled.getBalanceAsOf().toInstant());
+
+        transferService.create(auth, new CreateTransferRequest(from.getId(), to.getId(), 200L));
+
+        assertEquals(500L, balance(from, null));
+        assertEquals(700L, balance(from, afterFirst));
+        assertEquals(1000L, balance(from, beforeTransfers));
+        assertEquals(0L, balance(to, beforeTransfers));
+        assertThrows(BadRequestException.class, () ->
+                transferService.create(auth, new CreateTransferRequest(from.getId(), to.getId(), 600L)));
+    }
+
+    private long balance(Card card, OffsetDateTime at) {
+        return cardService.balanceAt(auth, card.getId(), at).balanceMinor();
+    }
+
+    private static Card card(User user, long balance) {
+        return Card.builder()
+                .user(user)
+                .cardNumberCiphertext(new byte[] {1})
+                .ownerName("Ledger")
+                .expiration(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balanceMinor(balance)
+                .build();
+    }
+}
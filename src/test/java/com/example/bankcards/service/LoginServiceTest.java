@@ -0,0 +1,133 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.BankUserDetails;
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.config.JwtService;
+import com.example.bankcards.config.SqlStatementCounter;
+import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.dto.LoginResponse;
+import com.example.bankcards.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LoginServiceTest {
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+    @Mock
+    private JwtService jwtService;
+
+    private final SqlStatementCounter sqlStatementCounter = new SqlStatementCounter();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LoginService loginService;
+
+    @AfterEach
+    void tearDown() {
+        if (loginService != null) {
+            loginService.shutdown();
+        }
+    }
+
+    @Test
+    void login_ValidCredentials_ShouldReturnToken() throws Exception {
+        loginService = service(2, 10);
+        BankUserDetails principal = new BankUserDetails(1L, "user@test.com", "hash", true, 0,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        when(authenticationManager.authenticate(any()))
+                .thenReturn(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        when(jwtService.generateToken(eq("user@test.com"), anyMap())).thenReturn("jwt");
+
+        LoginResponse response = loginService.login(new LoginRequest("user@test.com", "password")).get(5, TimeUnit.SECONDS);
+
+        assertEquals("jwt", response.token());
+    }
+
+    @Test
+    void login_BadCredentials_ShouldCompleteExceptionally() {
+        loginService = service(1, 10);
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        CompletableFuture<LoginResponse> result = loginService.login(new LoginRequest("user@test.com", "wrong"));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BadCredentialsException.class, ex.getCause());
+    }
+
+    @Test
+    void login_QueueFull_ShouldRejectWithRetryAfter() throws Exception {
+        loginService = service(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new BadCredentialsException("Bad credentials");
+        });
+        LoginRequest request = new LoginRequest("user@test.com", "password");
+
+        CompletableFuture<LoginResponse> running = loginService.login(request);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<LoginResponse> queued = loginService.login(request);
+        assertEquals(1, meterRegistry.get("bank.login.queue").gauge().value());
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class, () -> loginService.login(request));
+        assertEquals(Duration.ofSeconds(2), ex.getRetryAfter());
+        assertEquals(1, meterRegistry.get("bank.login.rejected").counter().count());
+
+        release.countDown();
+        assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void login_StatementsOnPoolThread_ShouldCountInRequest() {
+        loginService = service(1, 10);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            sqlStatementCounter.inspect("select u from users u");
+            throw new BadCredentialsException("Bad credentials");
+        });
+        sqlStatementCounter.begin("POST /api/auth/login");
+
+        CompletableFuture<LoginResponse> result = loginService.login(new LoginRequest("user@test.com", "wrong"));
+        SqlStatementCounter.Statements statements = sqlStatementCounter.suspend();
+
+        assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, statements.count());
+    }
+
+    @Test
+    void queueBucket_ShouldCollapseQueueSize() {
+        assertEquals("empty", LoginService.queueBucket(0, 64));
+        assertEquals("below_half", LoginService.queueBucket(31, 64));
+        assertEquals("above_half", LoginService.queueBucket(32, 64));
+        assertEquals("full", LoginService.queueBucket(64, 64));
+    }
+
+    private LoginService service(int threads, int queueCapacity) {
+        return new LoginService(authenticationManager, jwtService, new EndpointObservations(ObservationRegistry.NOOP),
+                sqlStatementCounter, meterRegistry, threads, queueCapacity, Duration.ofSeconds(2));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.TransferExportRow;
+import com.example.bankcards.repository.TransferExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferExportServiceTest {
+
+    @Mock
+    private TransferExportRepository transferExportRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransferExportService exportService;
+
+    private final UserRef user = new UserRef(1L, "user@test.com", Set.of("ROLE_USER"));
+    private final OffsetDateTime createdAt = OffsetDateTime.parse("2025-01-02T10:15:30Z");
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new TransferExportService(transferExportRepository, objectMapper, transactionManager, 2);
+    }
+
+    @Test
+    void export_Csv_ShouldWriteHeaderAndOneLinePerTransfer() {
+        when(transferExportRepository.streamByUser(1L, 2)).thenReturn(Stream.of(
+                new TransferExportRow(1L, 10L, 11L, 500L, createdAt),
+                new TransferExportRow(2L, 11L, 10L, 200L, createdAt)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(user, ExportFormat.CSV, out);
+
+        assertEquals("""
+                id,fromCardId,toCardId,amountMinor,createdAt
+                1,10,11,500,2025-01-02T10:15:30Z
+                2,11,10,200,2025-01-02T10:15:30Z
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_Ndjson_ShouldWriteOneJsonObjectPerLine() {
+        when(transferExportRepository.streamByUser(1L, 2)).thenReturn(Stream.of(
+                new TransferExportRow(1L, 10L, 11L, 500L, createdAt),
+                new TransferExportRow(2L, 11L, 10L, 200L, createdAt),
+                new TransferExportRow(3L, 10L, 11L, 100L, createdAt)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(user, ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"id\":1,\"fromCardId\":10,\"toCardId\":11,\"amountMinor\":500,\"createdAt\":\"2025-01-02T10:15:30Z\"}", lines[0]);
+        assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("}\n"));
+    }
+
+    @Test
+    void export_ShouldCloseCursorStream() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(transferExportRepository.streamByUser(1L, 2)).thenReturn(Stream.<TransferExportRow>empty().onClose(() -> closed.set(true)));
+
+        exportService.export(user, ExportFormat.NDJSON, new ByteArrayOutputStream());
+
+        assertTrue(closed.get());
+    }
+}
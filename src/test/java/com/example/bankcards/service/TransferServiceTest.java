@@ -1,6 +1,9 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.EndpointObservations;
 import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.Role;
@@ -11,12 +14,18 @@ import com.example.bankcards.exception.NotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -24,6 +33,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -44,16 +55,32 @@ class TransferServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CurrentUserResolver currentUserResolver;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private TransferSummaryService transferSummaryService;
+
     @Mock
     private Authentication authentication;
 
+    private final List<Observation.Context> observed = new ArrayList<>();
+
+    @Spy
+    private EndpointObservations observations = new EndpointObservations(recordingRegistry(observed));
+
     @InjectMocks
     private TransferService transferService;
 
     private User testUser;
+    private UserRef testUserRef;
     private Card fromCard;
     private Card toCard;
     private Transfer testTransfer;
+    private TransferResponse testResponse;
     private CreateTransferRequest createTransferRequest;
 
     @BeforeEach
@@ -66,12 +93,12 @@ class TransferServiceTest {
                 .enabled(true)
                 .roles(Set.of(Role.builder().id(1L).name("ROLE_USER").build()))
                 .build();
+        testUserRef = new UserRef(1L, "user@test.com", Set.of("ROLE_USER"));
 
         fromCard = Card.builder()
                 .id(1L)
                 .user(testUser)
-                .cardNumberEncrypted("encryptedFrom")
-                .cardNumberIv("ivFrom")
+                .cardNumberCiphertext(new byte[] {1, 2, 3})
                 .ownerName("From Owner")
                 .expiration(LocalDate.now().plusYears(2))
                 .status(CardStatus.ACTIVE)
@@ -81,8 +108,7 @@ class TransferServiceTest {
         toCard = Card.builder()
                 .id(2L)
                 .user(testUser)
-                .cardNumberEncrypted("encryptedTo")
-                .cardNumberIv("ivTo")
+                .cardNumberCiphertext(new byte[] {4, 5, 6})
                 .ownerName("To Owner")
                 .expiration(LocalDate.now().plusYears(2))
                 .status(CardStatus.ACTIVE)
@@ -97,33 +123,93 @@ class TransferServiceTest {
                 .amountMinor(10000L)
                 .build();
 
+        testResponse = new TransferResponse(1L, 1L, "**** **** **** 1111", 2L, "**** **** **** 2222",
+                10000L, OffsetDateTime.parse("2025-01-02T10:15:30Z"));
+
         // Создаем запрос на перевод
         createTransferRequest = new CreateTransferRequest(1L, 2L, 10000L);
     }
 
     @Test
     void create_ValidTransfer_ShouldSucceed() {
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
-        when(cardRepository.save(any(Card.class))).thenReturn(fromCard, toCard);
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(fromCard));
+        when(ledgerService.balance(fromCard)).thenReturn(50000L);
+        when(cardRepository.findForShareById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
+        when(transferRepository.findResponseById(1L)).thenReturn(Optional.of(testResponse));
 
-        Transfer result = transferService.create(authentication, createTransferRequest);
+        TransferResponse result = transferService.create(authentication, createTransferRequest);
 
         assertNotNull(result);
-        assertEquals(1L, result.getId());
-        assertEquals(10000L, result.getAmountMinor());
-        assertEquals(1L, result.getFromCard().getId());
-        assertEquals(2L, result.getToCard().getId());
+        assertEquals(1L, result.id());
+        assertEquals(10000L, result.amountMinor());
+        assertEquals(1L, result.fromCardId());
+        assertEquals(2L, result.toCardId());
+        assertEquals("**** **** **** 1111", result.fromCardMasked());
+        assertEquals("success", outcome());
+
+        verify(cardRepository, never()).save(any(Card.class));
+        verify(transferRepository).save(any(Transfer.class));
+        verify(ledgerService).record(testTransfer);
+        verify(transferSummaryService).record(1L, testTransfer.getCreatedAt(),
+                List.of(new TransferSummaryService.Movement(1L, 2L, 10000L)));
+    }
+
+    @Test
+    void create_FromHigherIdCard_ShouldLockCardsInAscendingIdOrder() {
+        CreateTransferRequest request = new CreateTransferRequest(2L, 1L, 10000L);
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForShareById(1L)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findForUpdateById(2L)).thenReturn(Optional.of(toCard));
+        when(ledgerService.balance(toCard)).thenReturn(10000L);
+        when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
+        when(transferRepository.findResponseById(1L)).thenReturn(Optional.of(testResponse));
 
-        assertEquals(40000L, fromCard.getBalanceMinor()); 
-        assertEquals(20000L, toCard.getBalanceMinor());
+        transferService.create(authentication, request);
 
-        verify(cardRepository).save(fromCard);
-        verify(cardRepository).save(toCard);
-        verify(transferRepository).save(any(Transfer.class));
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findForShareById(1L);
+        inOrder.verify(cardRepository).findForUpdateById(2L);
+    }
+
+    @Test
+    void listBefore_MoreThanLimit_ShouldSeekFromLastCreatedAtAndId() {
+        OffsetDateTime now = OffsetDateTime.parse("2025-01-02T10:15:30.123456Z");
+        TransferResponse newest = new TransferResponse(9L, 1L, "****", 2L, "****", 1L, now);
+        TransferResponse older = new TransferResponse(7L, 1L, "****", 2L, "****", 1L, now.minusSeconds(5));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(transferRepository.findLatest(1L, Limit.of(2))).thenReturn(List.of(newest, older));
+
+        CursorPage<TransferResponse> page = transferService.listBefore(authentication, null, 1);
+
+        assertEquals(List.of(newest), page.items());
+        assertNotNull(page.nextCursor());
+
+        when(transferRepository.findBefore(1L, now, 9L, Limit.of(2))).thenReturn(List.of(older));
+        CursorPage<TransferResponse> next = transferService.listBefore(authentication, page.nextCursor(), 1);
+
+        assertEquals(List.of(older), next.items());
+        assertNull(next.nextCursor());
+    }
+
+    @Test
+    void list_ShouldReturnProjectionPage() {
+        Pageable pageable = PageRequest.of(0, 20);
+        Page<TransferResponse> page = new PageImpl<>(List.of(testResponse), pageable, 1);
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(transferRepository.findResponsesByUserId(1L, pageable)).thenReturn(page);
+
+        Page<TransferResponse> result = transferService.list(authentication, pageable);
+
+        assertEquals(List.of(testResponse), result.getContent());
+        verify(transferRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void listBefore_LimitTooLarge_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () ->
+                transferService.listBefore(authentication, null, 1000));
     }
 
     @Test
@@ -153,9 +239,8 @@ class TransferServiceTest {
     @Test
     void create_FromCardNotFound_ShouldThrowNotFoundException() {
 
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
@@ -163,10 +248,10 @@ class TransferServiceTest {
 
     @Test
     void create_ToCardNotFound_ShouldThrowNotFoundException() {
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.empty());
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(fromCard));
+        when(ledgerService.balance(fromCard)).thenReturn(50000L);
+        when(cardRepository.findForShareById(2L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
@@ -177,10 +262,8 @@ class TransferServiceTest {
         User otherUser = User.builder().id(999L).email("other@test.com").build();
         Card otherUserCard = Card.builder().id(1L).user(otherUser).build();
 
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(otherUserCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(otherUserCard));
 
         assertThrows(NotFoundException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
@@ -192,10 +275,10 @@ class TransferServiceTest {
         User otherUser = User.builder().id(999L).email("other@test.com").build();
         Card otherUserCard = Card.builder().id(2L).user(otherUser).build();
 
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(otherUserCard));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(fromCard));
+        when(ledgerService.balance(fromCard)).thenReturn(50000L);
+        when(cardRepository.findForShareById(2L)).thenReturn(Optional.of(otherUserCard));
 
         assertThrows(NotFoundException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
@@ -206,23 +289,22 @@ class TransferServiceTest {
 
         fromCard.setStatus(CardStatus.BLOCKED);
 
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(fromCard));
 
         assertThrows(BadRequestException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
+        assertEquals("inactive_card", outcome());
     }
 
     @Test
     void create_ToCardInactive_ShouldThrowBadRequestException() {
         toCard.setStatus(CardStatus.BLOCKED);
 
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(fromCard));
+        when(ledgerService.balance(fromCard)).thenReturn(50000L);
+        when(cardRepository.findForShareById(2L)).thenReturn(Optional.of(toCard));
 
         assertThrows(BadRequestException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
@@ -230,24 +312,46 @@ class TransferServiceTest {
 
     @Test
     void create_InsufficientFunds_ShouldThrowBadRequestException() {
-        fromCard.setBalanceMinor(5000L); 
         CreateTransferRequest request = new CreateTransferRequest(1L, 2L, 10000L);
 
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(testUser));
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(currentUserResolver.resolve(authentication)).thenReturn(testUserRef);
+        when(cardRepository.findForUpdateById(1L)).thenReturn(Optional.of(fromCard));
+        when(ledgerService.balance(fromCard)).thenReturn(5000L);
 
         assertThrows(BadRequestException.class, () -> 
                 transferService.create(authentication, request));
+        assertEquals("insufficient_funds", outcome());
+        verify(ledgerService, never()).record(any());
     }
 
     @Test
     void create_UserNotFound_ShouldThrowNotFoundException() {
-        when(authentication.getName()).thenReturn("user@test.com");
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.empty());
+        when(currentUserResolver.resolve(authentication)).thenThrow(new NotFoundException("User not found"));
 
         assertThrows(NotFoundException.class, () -> 
                 transferService.create(authentication, createTransferRequest));
     }
+
+    /** Исход последнего замера bank.transfer.create. */
+    private String outcome() {
+        Observation.Context context = observed.get(observed.size() - 1);
+        assertEquals("bank.transfer.create", context.getName());
+        return context.getLowCardinalityKeyValue("outcome").getValue();
+    }
+
+    static ObservationRegistry recordingRegistry(List<Observation.Context> observed) {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                observed.add(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        return registry;
+    }
 }
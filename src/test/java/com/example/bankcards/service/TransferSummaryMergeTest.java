@@ -0,0 +1,74 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.JwtPrincipal;
+import com.example.bankcards.dto.CreateTransferRequest;
+import com.example.bankcards.dto.TransferSummaryResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Итоги переводов обновляются оператором MERGE в транзакции перевода: первая строка месяца вставляется,
+ * следующие переводы прибавляются к ней.
+ */
+@SpringBootTest(properties = {"app.card-backfill.enabled=false", "app.ledger.snapshot-enabled=false"})
+@ActiveProfiles("test")
+class TransferSummaryMergeTest {
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private TransferSummaryService transferSummaryService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Test
+    void create_ShouldAccumulateMonthlyTotalsPerCard() {
+        String email = "summary-" + UUID.randomUUID() + "@test.com";
+        User user = userRepository.save(User.builder().email(email).passwordHash("x").fullName("Summary").enabled(true).build());
+        Authentication auth = new UsernamePasswordAuthenticationToken(new JwtPrincipal(user.getId(), email), null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        Long first = cardRepository.save(card(user, 1000L)).getId();
+        Long second = cardRepository.save(card(user, 0L)).getId();
+
+        transferService.create(auth, new CreateTransferRequest(first, second, 300L));
+        transferService.create(auth, new CreateTransferRequest(second, first, 100L));
+        transferService.create(auth, new CreateTransferRequest(first, second, 50L));
+
+        YearMonth month = YearMonth.now(ZoneOffset.UTC);
+        assertEquals(List.of(
+                new TransferSummaryResponse(month, first, 2L, 350L, 1L, 100L, 300L),
+                new TransferSummaryResponse(month, second, 1L, 100L, 2L, 350L, 300L)
+        ), transferSummaryService.list(auth, month, month));
+    }
+
+    private static Card card(User user, long balance) {
+        return Card.builder()
+                .user(user)
+                .cardNumberCiphertext(new byte[] {1})
+                .ownerName("Summary")
+                .expiration(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balanceMinor(balance)
+                .build();
+    }
+}
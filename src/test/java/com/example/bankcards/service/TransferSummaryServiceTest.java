@@ -0,0 +1,92 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferSummaryResponse;
+import com.example.bankcards.entity.TransferSummary;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.TransferSummaryRepository;
+import com.example.bankcards.repository.TransferSummaryWriter;
+import com.example.bankcards.repository.TransferSummaryWriter.CardTotals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferSummaryServiceTest {
+
+    @Mock
+    private TransferSummaryRepository transferSummaryRepository;
+
+    @Mock
+    private TransferSummaryWriter transferSummaryWriter;
+
+    @Mock
+    private CurrentUserResolver currentUserResolver;
+
+    @Mock
+    private Authentication authentication;
+
+    @InjectMocks
+    private TransferSummaryService transferSummaryService;
+
+    @Test
+    void record_ShouldAggregatePerCardInAscendingIdOrder() {
+        transferSummaryService.record(1L, OffsetDateTime.parse("2025-03-15T10:00:00Z"), List.of(
+                new TransferSummaryService.Movement(3L, 2L, 500L),
+                new TransferSummaryService.Movement(2L, 3L, 200L),
+                new TransferSummaryService.Movement(3L, 1L, 100L)));
+
+        verify(transferSummaryWriter).add(1L, LocalDate.of(2025, 3, 1), List.of(
+                new CardTotals(1L, 0, 0, 1, 100L, 100L),
+                new CardTotals(2L, 1, 200L, 1, 500L, 500L),
+                new CardTotals(3L, 2, 600L, 1, 200L, 500L)));
+    }
+
+    @Test
+    void record_ShouldUseUtcMonth() {
+        transferSummaryService.record(1L, OffsetDateTime.parse("2025-04-01T01:00:00+03:00"),
+                List.of(new TransferSummaryService.Movement(1L, 2L, 100L)));
+
+        verify(transferSummaryWriter).add(eq(1L), eq(LocalDate.of(2025, 3, 1)), anyCollection());
+    }
+
+    @Test
+    void list_ShouldReadOneRowPerCardAndMonth() {
+        TransferSummary row = TransferSummary.builder()
+                .userId(1L).monthStart(LocalDate.of(2025, 2, 1)).cardId(5L)
+                .sentCount(2L).sentMinor(300L).receivedCount(0L).receivedMinor(0L).largestMinor(200L)
+                .build();
+        when(currentUserResolver.resolve(authentication)).thenReturn(new UserRef(1L, "user@test.com", Set.of("ROLE_USER")));
+        when(transferSummaryRepository.findByUserIdAndMonths(1L, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 1)))
+                .thenReturn(List.of(row));
+
+        List<TransferSummaryResponse> result = transferSummaryService.list(authentication, YearMonth.of(2025, 1), YearMonth.of(2025, 3));
+
+        assertEquals(List.of(new TransferSummaryResponse(YearMonth.of(2025, 2), 5L, 2L, 300L, 0L, 0L, 200L)), result);
+    }
+
+    @Test
+    void list_FromAfterTo_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () ->
+                transferSummaryService.list(authentication, YearMonth.of(2025, 5), YearMonth.of(2025, 1)));
+        verifyNoInteractions(transferSummaryRepository);
+    }
+
+    @Test
+    void list_RangeTooLong_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () ->
+                transferSummaryService.list(authentication, YearMonth.of(2000, 1), YearMonth.of(2025, 1)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TokenEpochRegistry;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.support.TestData;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Общий кэш {@link CurrentUserResolver} сбрасывается только после коммита изменения пользователя,
+ * в том числе после массового обновления эпохи токенов.
+ */
+@SpringBootTest(properties = "app.card-backfill.enabled=false")
+@ActiveProfiles("test")
+class UserCacheEvictionTest {
+
+    @Autowired
+    private CurrentUserResolver resolver;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ApplicationContext context;
+
+    private User user;
+    private Authentication authentication;
+
+    @BeforeEach
+    void setUp() {
+        // Тестовый фреймворк привязывает к потоку mock-запрос; без сброса ответ давал бы кэш запроса.
+        RequestContextHolder.resetRequestAttributes();
+        user = new TestData(context).user("evict-" + UUID.randomUUID() + "@test.com", "x", "Evict");
+        authentication = new UsernamePasswordAuthenticationToken(
+                user.getEmail(), null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        resolver.resolve(authentication);
+    }
+
+    @Test
+    void userUpdate_ShouldEvictAfterCommit() {
+        double misses = cacheMisses();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User managed = userRepository.findById(user.getId()).orElseThrow();
+            managed.setFullName("Renamed");
+            userRepository.flush();
+            resolver.resolve(authentication);
+            assertEquals(misses, cacheMisses());
+        });
+
+        resolver.resolve(authentication);
+        assertEquals(misses + 1, cacheMisses());
+    }
+
+    @Test
+    void revoke_BulkUpdate_ShouldEvict() {
+        double misses = cacheMisses();
+
+        tokenEpochRegistry.revoke(user.getId());
+
+        resolver.resolve(authentication);
+        assertEquals(misses + 1, cacheMisses());
+    }
+
+    private double cacheMisses() {
+        return meterRegistry.get("cache.gets").tag("cache", "users.by-email").tag("result", "miss").functionCounter().count();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Максимум SQL-операторов на каждый HTTP-запрос, выполненный в теле теста (MockMvc или реальный сервер).
+ * На классе задает бюджет по умолчанию, на методе — переопределяет его. Нужен контекст Spring с {@code SqlStatementFilter}.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(SqlStatementBudgetExtension.class)
+public @interface SqlStatementBudget {
+    int value();
+}
@@ -0,0 +1,72 @@
+package com.example.bankcards.support;
+
+import com.example.bankcards.config.SqlStatementCounter;
+import com.example.bankcards.config.SqlStatementCounter.Statements;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Проверяет {@link SqlStatementBudget}: собирает итоги всех запросов, завершившихся во время теста
+ * (без @BeforeEach), и валит тест, если какой-то запрос выполнил больше операторов, чем разрешено.
+ */
+public class SqlStatementBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(SqlStatementBudgetExtension.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        if (budget(context) == null) {
+            return;
+        }
+        List<Statements> requests = Collections.synchronizedList(new ArrayList<>());
+        Consumer<Statements> listener = requests::add;
+        counter(context).addListener(listener);
+        context.getStore(NAMESPACE).put("requests", requests);
+        context.getStore(NAMESPACE).put("listener", listener);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterTestExecution(ExtensionContext context) {
+        SqlStatementBudget budget = budget(context);
+        if (budget == null) {
+            return;
+        }
+        counter(context).removeListener(context.getStore(NAMESPACE).remove("listener", Consumer.class));
+        List<Statements> requests = context.getStore(NAMESPACE).remove("requests", List.class);
+        if (requests.isEmpty()) {
+            fail("@SqlStatementBudget is set, but no HTTP request was counted");
+        }
+        List<String> violations = new ArrayList<>();
+        for (Statements statements : requests) {
+            if (statements.count() > budget.value()) {
+                Map.Entry<String, Integer> repeated = statements.mostRepeated();
+                violations.add(String.format("%s: %d statements (budget %d), most repeated %d times: %s",
+                        statements.endpoint(), statements.count(), budget.value(), repeated.getValue(), repeated.getKey()));
+            }
+        }
+        if (!violations.isEmpty()) {
+            fail("SQL statement budget exceeded:\n" + String.join("\n", violations));
+        }
+    }
+
+    private static SqlStatementBudget budget(ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), SqlStatementBudget.class)
+                .or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), SqlStatementBudget.class))
+                .orElse(null);
+    }
+
+    private static SqlStatementCounter counter(ExtensionContext context) {
+        return SpringExtension.getApplicationContext(context).getBean(SqlStatementCounter.class);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.bankcards.support;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BlindIndex;
+import com.example.bankcards.util.CardMasker;
+import com.example.bankcards.util.CryptoService;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Общие тестовые данные через репозитории приложения: роль USER, пользователи, карты с зашифрованным
+ * номером, last4 и HMAC, переводы между картами по кругу. Поля карты, которые проставляет сущность
+ * (снимок баланса, версия), не задаются, поэтому изменения схемы правятся здесь один раз.
+ */
+public class TestData {
+    private static final String USER_ROLE = "USER";
+    private static final long TRANSFER_AMOUNT = 100L;
+
+    private final RoleRepository roleRepository;
+    private final UserRepository userRepository;
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+    private final CryptoService cryptoService;
+    private final BlindIndex blindIndex;
+    private final PasswordEncoder passwordEncoder;
+
+    public TestData(ApplicationContext context) {
+        this.roleRepository = context.getBean(RoleRepository.class);
+        this.userRepository = context.getBean(UserRepository.class);
+        this.cardRepository = context.getBean(CardRepository.class);
+        this.transferRepository = context.getBean(TransferRepository.class);
+        this.cryptoService = context.getBean(CryptoService.class);
+        this.blindIndex = context.getBean(BlindIndex.class);
+        this.passwordEncoder = context.getBean(PasswordEncoder.class);
+    }
+
+    /**
+     * Роль USER; создается, если ее еще нет.
+     */
+    public Role userRole() {
+        return roleRepository.findByName(USER_ROLE).orElseGet(() -> roleRepository.save(Role.builder().name(USER_ROLE).build()));
+    }
+
+    /**
+     * Хэш пароля; BCrypt дорогой, поэтому для многих пользователей считается один раз.
+     */
+    public String passwordHash(String password) {
+        return passwordEncoder.encode(password);
+    }
+
+    /**
+     * Активный пользователь с ролью USER.
+     */
+    public User user(String email, String passwordHash, String fullName) {
+        return userRepository.save(User.builder()
+                .email(email)
+                .passwordHash(passwordHash)
+                .fullName(fullName)
+                .enabled(true)
+                .roles(Set.of(userRole()))
+                .build());
+    }
+
+    /**
+     * Активные карты пользователя на имя владельца с одинаковым начальным балансом.
+     *
+     * @param numbers 16-значный номер i-й карты
+     */
+    public List<Card> cards(User user, int count, long balanceMinor, IntFunction<String> numbers) {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String number = numbers.apply(i);
+            cards.add(Card.builder()
+                    .user(user)
+                    .cardNumberCiphertext(cryptoService.encrypt(number))
+                    .cardLast4(CardMasker.last4(number))
+                    .cardNumberHmac(blindIndex.of(number))
+                    .ownerName(user.getFullName())
+                    .expiration(LocalDate.now().plusYears(3))
+                    .status(CardStatus.ACTIVE)
+                    .balanceMinor(balanceMinor)
+                    .build());
+        }
+        return cardRepository.saveAll(cards);
+    }
+
+    /**
+     * Переводы пользователя с i-й карты на следующую по кругу. Пишутся только строки переводов,
+     * без проводок: балансы карт не меняются. Меньше двух карт — переводов нет.
+     */
+    public List<Transfer> transfers(User user, List<Card> cards, int count) {
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < count && cards.size() > 1; i++) {
+            transfers.add(Transfer.builder()
+                    .user(user)
+                    .fromCard(cards.get(i % cards.size()))
+                    .toCard(cards.get((i + 1) % cards.size()))
+                    .amountMinor(TRANSFER_AMOUNT)
+                    .build());
+        }
+        return transferRepository.saveAll(transfers);
+    }
+}
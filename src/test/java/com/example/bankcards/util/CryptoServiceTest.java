@@ -0,0 +1,57 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.EndpointObservations;
+import com.example.bankcards.entity.Card;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CryptoServiceTest {
+
+    private CryptoService cryptoService;
+
+    @BeforeEach
+    void setUp() {
+        cryptoService = new CryptoService("test-crypto-secret", 2, new EndpointObservations(ObservationRegistry.NOOP));
+    }
+
+    @Test
+    void encrypt_ThenDecrypt_ShouldReturnPlaintext() {
+        byte[] ciphertext = cryptoService.encrypt("1234567890123456");
+
+        assertEquals(12 + 16 + 16, ciphertext.length);
+        assertEquals("1234567890123456", cryptoService.decrypt(ciphertext));
+    }
+
+    @Test
+    void encrypt_SamePlaintextTwice_ShouldUseDifferentIv() {
+        byte[] first = cryptoService.encrypt("1234567890123456");
+        byte[] second = cryptoService.encrypt("1234567890123456");
+
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void decryptAll_ShouldDecryptEveryCardInOrder() {
+        Card first = Card.builder().cardNumberCiphertext(cryptoService.encrypt("1111222233334444")).build();
+        Card second = Card.builder().cardNumberCiphertext(cryptoService.encrypt("5555666677778888")).build();
+
+        List<String> numbers = cryptoService.decryptAll(List.of(first, second));
+
+        assertEquals(List.of("1111222233334444", "5555666677778888"), numbers);
+    }
+
+    @Test
+    void decrypt_TamperedCiphertext_ShouldThrow() {
+        byte[] ciphertext = cryptoService.encrypt("1234567890123456");
+        ciphertext[ciphertext.length - 1] ^= 1;
+
+        assertThrows(IllegalStateException.class, () -> cryptoService.decrypt(ciphertext));
+        assertEquals("1234567890123456", cryptoService.decrypt(cryptoService.encrypt("1234567890123456")));
+    }
+}